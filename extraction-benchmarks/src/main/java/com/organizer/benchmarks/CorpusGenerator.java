@@ -0,0 +1,234 @@
+package com.organizer.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.apache.poi.xwpf.usermodel.BreakType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+//Writes the benchmark corpus: PDF, DOCX and DOC files with a given number of pages of generated text
+//The text only depends on the format and page count, so the same arguments always give the same documents
+//Run on its own with: java -cp target/benchmarks.jar com.organizer.benchmarks.CorpusGenerator <dir> [pages...]
+public class CorpusGenerator {
+    public enum Format {
+        PDF("pdf"), DOCX("docx"), DOC("doc");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    //Fills a page of 10pt Helvetica on US letter
+    static final int LINES_PER_PAGE = 45;
+    static final int WORDS_PER_LINE = 11;
+
+    //DOC files can't be created from nothing with POI, they are written into a copy of a blank Word 97-2003 file
+    //The one bundled with the benchmarks is used unless another is given with this property
+    public static final String DOC_TEMPLATE_PROPERTY = "corpus.doc.template";
+    private static final String DOC_TEMPLATE_RESOURCE = "blank.doc";
+
+    private static final long SEED = 0x5EED_2024L;
+
+    private static final String[] VOCABULARY = ("the of and to in a is that for on with as by at from this be are "
+            + "revenue quarter report contract employee policy analysis design database interface research budget "
+            + "forecast agreement student lecture assignment chapter section figure table results method summary "
+            + "conclusion appendix reference customer product market compliance liability warranty salary benefits "
+            + "specification requirements architecture implementation algorithm protocol software hypothesis theorem "
+            + "experiment literature essay history philosophy economics accounting statement invoice payment").split(" ");
+
+    private final Path directory;
+
+    public CorpusGenerator(Path directory) {
+        this.directory = directory;
+    }
+
+    //Path of the document, generated the first time it is asked for
+    public Path get(Format format, int pages) throws IOException {
+        Path file = directory.resolve("corpus-" + pages + "p." + format.extension);
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(directory);
+
+        //Written to a temp file first so a failed run doesn't leave a broken document behind
+        Path partial = Files.createTempFile(directory, "corpus-", ".partial");
+        try {
+            List<List<String>> text = generateText(format, pages);
+            switch (format) {
+                case PDF -> writePdf(text, partial);
+                case DOCX -> writeDocx(text, partial);
+                case DOC -> writeDoc(text, partial);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return file;
+    }
+
+    //Lines of every page, the first line of a page is a heading
+    static List<List<String>> generateText(Format format, int pages) {
+        Random random = new Random(SEED * 31 + format.ordinal() * 1_000_003L + pages);
+        List<List<String>> document = new ArrayList<>(pages);
+        for (int p = 0; p < pages; p++) {
+            List<String> lines = new ArrayList<>(LINES_PER_PAGE);
+            lines.add("Section " + (p + 1) + " " + capitalise(word(random)) + " " + capitalise(word(random)));
+            for (int l = 1; l < LINES_PER_PAGE; l++) {
+                StringBuilder line = new StringBuilder();
+                for (int w = 0; w < WORDS_PER_LINE; w++) {
+                    if (w > 0) {
+                        line.append(' ');
+                    }
+                    line.append(w == 0 ? capitalise(word(random)) : word(random));
+                    if (random.nextInt(12) == 0) {
+                        line.append(random.nextBoolean() ? ',' : '.');
+                    }
+                }
+                lines.add(line.toString());
+            }
+            document.add(lines);
+        }
+        return document;
+    }
+
+    private static void writePdf(List<List<String>> text, Path file) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+        try (PDDocument document = new PDDocument()) {
+            for (List<String> lines : text) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setLeading(15);
+                    content.newLineAtOffset(40, 750);
+                    for (int l = 0; l < lines.size(); l++) {
+                        content.setFont(l == 0 ? bold : font, l == 0 ? 12 : 10);
+                        content.showText(lines.get(l));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    //One paragraph per line, a page break after every page and a small table every tenth page
+    private static void writeDocx(List<List<String>> text, Path file) throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int p = 0; p < text.size(); p++) {
+                List<String> lines = text.get(p);
+                XWPFRun heading = document.createParagraph().createRun();
+                heading.setBold(true);
+                heading.setText(lines.get(0));
+                for (int l = 1; l < lines.size(); l++) {
+                    document.createParagraph().createRun().setText(lines.get(l));
+                }
+
+                if (p % 10 == 9) {
+                    XWPFTable table = document.createTable(3, 3);
+                    for (int r = 0; r < 3; r++) {
+                        for (int c = 0; c < 3; c++) {
+                            table.getRow(r).getCell(c).setText(lines.get(1 + r).split(" ")[c]);
+                        }
+                    }
+                }
+
+                if (p < text.size() - 1) {
+                    XWPFParagraph pageEnd = document.createParagraph();
+                    pageEnd.createRun().addBreak(BreakType.PAGE);
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                document.write(out);
+            }
+        }
+    }
+
+    //Paragraphs end with \r in Word's binary format, \f is a page break
+    private static void writeDoc(List<List<String>> text, Path file) throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int p = 0; p < text.size(); p++) {
+            for (String line : text.get(p)) {
+                body.append(line).append('\r');
+            }
+            if (p < text.size() - 1) {
+                body.append('\f');
+            }
+        }
+
+        try (InputStream in = openDocTemplate();
+             HWPFDocument document = new HWPFDocument(in)) {
+            //Goes in front of the template's last paragraph mark, insertAfter doesn't grow the main text length
+            //in the file header, so readers would never see the text
+            Range range = document.getRange();
+            range.insertBefore(body.toString());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                document.write(out);
+            }
+        }
+    }
+
+    private static InputStream openDocTemplate() throws IOException {
+        String template = System.getProperty(DOC_TEMPLATE_PROPERTY);
+        if (template != null && !template.isEmpty()) {
+            return Files.newInputStream(Paths.get(template));
+        }
+        InputStream in = CorpusGenerator.class.getResourceAsStream(DOC_TEMPLATE_RESOURCE);
+        if (in == null) {
+            throw new IOException(DOC_TEMPLATE_RESOURCE + " is missing from the benchmarks jar");
+        }
+        return in;
+    }
+
+    private static String word(Random random) {
+        return VOCABULARY[random.nextInt(VOCABULARY.length)];
+    }
+
+    private static String capitalise(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: CorpusGenerator <directory> [pages...]");
+            System.exit(1);
+        }
+        CorpusGenerator generator = new CorpusGenerator(Paths.get(args[0]));
+        List<Integer> pageCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            pageCounts.add(Integer.parseInt(args[i]));
+        }
+        if (pageCounts.isEmpty()) {
+            pageCounts = List.of(1, 20, 200);
+        }
+
+        for (Format format : Format.values()) {
+            for (int pages : pageCounts) {
+                Path file = generator.get(format, pages);
+                System.out.printf("%s %d pages: %s (%d KB)%n", format, pages, file, Files.size(file) / 1024);
+            }
+        }
+    }
+}
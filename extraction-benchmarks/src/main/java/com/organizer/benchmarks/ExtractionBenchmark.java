@@ -0,0 +1,151 @@
+package com.organizer.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import com.organizer.drive_backend.extraction.DocTextExtractor;
+import com.organizer.drive_backend.extraction.DocumentSource;
+import com.organizer.drive_backend.extraction.DocxTextExtractor;
+import com.organizer.drive_backend.extraction.ExtractionScheduler;
+import com.organizer.drive_backend.extraction.PdfTextExtractor;
+import com.organizer.drive_backend.extraction.TextExtractor;
+
+//Documents extracted per second for each extractor and document size
+//Extractors are set up with the defaults from application.properties, except the character cap which is off
+//so every run extracts the whole document
+//Allocation rate comes from JMH's gc profiler, peak heap from PeakMemoryProfiler. main() turns both on:
+//  java -cp target/benchmarks.jar com.organizer.benchmarks.ExtractionBenchmark
+//or pick them yourself with the JMH launcher:
+//  java -jar target/benchmarks.jar ExtractionBenchmark -prof gc -prof com.organizer.benchmarks.PeakMemoryProfiler
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ExtractionBenchmark {
+    //Generated documents are kept here and reused by later runs
+    public static final String CORPUS_DIR_PROPERTY = "corpus.dir";
+
+    @Param({"PDF", "DOCX", "DOC"})
+    private CorpusGenerator.Format format;
+
+    @Param({"1", "20", "200"})
+    private int pages;
+
+    private AnnotationConfigApplicationContext context;
+    private TextExtractor extractor;
+    private DocumentSource source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path corpusDir = Paths.get(System.getProperty(CORPUS_DIR_PROPERTY, "target/corpus"));
+        source = DocumentSource.of(new CorpusGenerator(corpusDir).get(format, pages).toFile());
+
+        //The extractors are Spring components, so they get a small context of their own instead of the whole application
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(
+                new MapPropertySource("benchmark", Map.of("extraction.max-chars", Long.MAX_VALUE)));
+        context.getEnvironment().getPropertySources().addLast(
+                new ResourcePropertySource("classpath:application.properties"));
+        context.register(ExtractionScheduler.class);
+        context.register(switch (format) {
+            case PDF -> PdfTextExtractor.class;
+            case DOCX -> DocxTextExtractor.class;
+            case DOC -> DocTextExtractor.class;
+        });
+        context.refresh();
+        extractor = context.getBean(TextExtractor.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //Characters extracted, returned so the work can't be optimised away
+    @Benchmark
+    public long extract() throws IOException {
+        CountingWriter out = new CountingWriter();
+        extractor.writeText(source, out);
+        return out.chars;
+    }
+
+    //Throws the text away, so only the extractor's own allocations are measured
+    private static final class CountingWriter extends Writer {
+        private long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void write(int c) {
+            chars++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    //Runs this benchmark with the gc and peak memory profilers, other JMH options can be passed as usual
+    //-Dcorpus.dir and -Dcorpus.doc.template given to this JVM are handed on to the forked benchmark JVMs
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ExtractionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .addProfiler(PeakMemoryProfiler.class);
+
+        List<String> properties = new ArrayList<>();
+        for (String property : List.of(CORPUS_DIR_PROPERTY, CorpusGenerator.DOC_TEMPLATE_PROPERTY)) {
+            String value = System.getProperty(property);
+            if (value != null) {
+                properties.add("-D" + property + "=" + value);
+            }
+        }
+        options.jvmArgsPrepend(properties.toArray(new String[0]));
+        new Runner(options.build()).run();
+    }
+}
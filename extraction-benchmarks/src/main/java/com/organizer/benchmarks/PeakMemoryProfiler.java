@@ -0,0 +1,94 @@
+package com.organizer.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+//Peak heap of each iteration, sampled every millisecond from a background thread
+//peak.heap.used includes garbage that wasn't collected yet, peak.heap.live is the most heap still in use right after a GC
+//Use with: -prof com.organizer.benchmarks.PeakMemoryProfiler
+public class PeakMemoryProfiler implements InternalProfiler {
+    private static final double MB = 1024 * 1024;
+
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final AtomicLong peakUsed = new AtomicLong();
+    private final AtomicLong peakLive = new AtomicLong();
+    private volatile boolean sampling;
+    private Thread sampler;
+
+    public PeakMemoryProfiler() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Peak heap used and peak heap live after GC per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        peakUsed.set(0);
+        peakLive.set(0);
+        sampling = true;
+        sampler = new Thread(() -> {
+            while (sampling) {
+                sample();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "peak-memory-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        sampling = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+
+        List<Result> results = new ArrayList<>();
+        results.add(new ScalarResult("peak.heap.used", peakUsed.get() / MB, "MB", AggregationPolicy.MAX));
+        results.add(new ScalarResult("peak.heap.live", peakLive.get() / MB, "MB", AggregationPolicy.MAX));
+        return results;
+    }
+
+    private void sample() {
+        long used = 0;
+        long live = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            used += pool.getUsage().getUsed();
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (afterGc != null) {
+                live += afterGc.getUsed();
+            }
+        }
+        peakUsed.accumulateAndGet(used, Math::max);
+        peakLive.accumulateAndGet(live, Math::max);
+    }
+}
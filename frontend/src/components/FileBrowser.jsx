@@ -7,7 +7,9 @@ import FileViewer from './FileViewer';
 
 const FileBrowser = ({ refreshTrigger }) => {
   const [files, setFiles] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState('');
   const [searchTerm, setSearchTerm] = useState('');
   const [contextMenu, setContextMenu] = useState({
@@ -33,10 +35,16 @@ const FileBrowser = ({ refreshTrigger }) => {
 
   const { getIdToken } = useAuth();
 
-  //Fetch user's files from backend
-  const fetchFiles = async () => {
+  //Fetch user's files from backend, a page at a time
+  //Without a cursor the list is reloaded from the first page, with one the next page is appended
+  const fetchFiles = async (cursor = null) => {
+    const loadingMorePages = typeof cursor === 'string';
     try {
-      setLoading(true);
+      if (loadingMorePages) {
+        setLoadingMore(true);
+      } else {
+        setLoading(true);
+      }
       setError('');
 
       const idToken = await getIdToken();
@@ -44,7 +52,10 @@ const FileBrowser = ({ refreshTrigger }) => {
         throw new Error('Authentication token not available');
       }
 
-      const response = await fetch('http://localhost:5050/api/files', {
+      const url = loadingMorePages
+        ? `http://localhost:5050/api/files?cursor=${encodeURIComponent(cursor)}`
+        : 'http://localhost:5050/api/files';
+      const response = await fetch(url, {
         method: 'GET',
         headers: {
           Authorization: `Bearer ${idToken}`,
@@ -63,14 +74,22 @@ const FileBrowser = ({ refreshTrigger }) => {
         throw new Error(data);
       }
 
-      setFiles(Array.isArray(data) ? data : []);
+      const pageItems = Array.isArray(data.items) ? data.items : [];
+      setFiles((prevFiles) =>
+        loadingMorePages ? [...prevFiles, ...pageItems] : pageItems
+      );
+      setNextCursor(data.nextCursor || null);
       console.log('Fetched files:', data);
     } catch (error) {
       console.error('Error fetching files:', error);
       setError(error.message);
-      setFiles([]);
+      if (!loadingMorePages) {
+        setFiles([]);
+        setNextCursor(null);
+      }
     } finally {
       setLoading(false);
+      setLoadingMore(false);
     }
   };
 
@@ -583,7 +602,7 @@ const FileBrowser = ({ refreshTrigger }) => {
       {error && (
         <div className="error-section">
           <p>Error loading files: {error}</p>
-          <button onClick={fetchFiles} className="retry-btn">
+          <button onClick={() => fetchFiles()} className="retry-btn">
             Try Again
           </button>
         </div>
@@ -683,6 +702,18 @@ const FileBrowser = ({ refreshTrigger }) => {
               </div>
             </div>
           )}
+
+          {nextCursor && (
+            <div className="load-more">
+              <button
+                className="load-more-btn"
+                onClick={() => fetchFiles(nextCursor)}
+                disabled={loadingMore}
+              >
+                {loadingMore ? 'Loading...' : 'Load more files'}
+              </button>
+            </div>
+          )}
         </>
       )}
 
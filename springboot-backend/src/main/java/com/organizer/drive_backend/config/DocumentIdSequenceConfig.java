@@ -0,0 +1,32 @@
+package com.organizer.drive_backend.config;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@DependsOn("entityManagerFactory")
+public class DocumentIdSequenceConfig {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //Rows created while IDs came from AUTO_INCREMENT are not known to the new sequence table
+    //Move the sequence past the highest existing ID (plus one allocation block) before anything is inserted
+    @PostConstruct
+    public void alignSequence() {
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE document_extractions_seq SET next_val = " +
+                    "(SELECT COALESCE(MAX(id), 0) + 51 FROM document_extractions) " +
+                    "WHERE next_val <= (SELECT COALESCE(MAX(id), 0) + 50 FROM document_extractions)");
+            if (updated > 0) {
+                System.out.println("Moved document_extractions_seq past existing document IDs");
+            }
+        } catch (Exception e) {
+            System.err.println("Could not align document ID sequence: " + e.getMessage());
+        }
+    }
+}
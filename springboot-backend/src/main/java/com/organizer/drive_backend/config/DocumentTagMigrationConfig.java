@@ -0,0 +1,59 @@
+package com.organizer.drive_backend.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+
+@Configuration
+@DependsOn("entityManagerFactory")
+public class DocumentTagMigrationConfig {
+    //Documents read per query
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //Tags used to only be stored comma-separated in document_extractions.tags
+    //Fill document_tags for documents saved before it existed, new documents get their rows on save
+    @PostConstruct
+    public void backfillTags() {
+        try {
+            long afterId = 0;
+            int filled = 0;
+            while (true) {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        "SELECT d.id, d.tags FROM document_extractions d WHERE d.id > ? AND d.tags IS NOT NULL AND d.tags <> '' " +
+                        "AND NOT EXISTS (SELECT 1 FROM document_tags dt WHERE dt.document_id = d.id) ORDER BY d.id LIMIT " + BATCH_SIZE,
+                        afterId);
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                List<Object[]> tagRows = new ArrayList<>();
+                for (Map<String, Object> row : rows) {
+                    afterId = ((Number) row.get("id")).longValue();
+                    for (String tag : DocumentExtraction.splitTags((String) row.get("tags"))) {
+                        tagRows.add(new Object[] { afterId, tag });
+                    }
+                }
+                jdbcTemplate.batchUpdate("INSERT IGNORE INTO document_tags (document_id, tag) VALUES (?, ?)", tagRows);
+                filled += rows.size();
+            }
+
+            if (filled > 0) {
+                System.out.println("Filled document_tags for " + filled + " documents");
+            }
+        } catch (Exception e) {
+            System.err.println("Could not fill document_tags: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.organizer.drive_backend.config;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentText;
+
+@Configuration
+@DependsOn("entityManagerFactory")
+public class DocumentTextMigrationConfig {
+    //Rows moved per transaction
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //Dropping the old column can't be undone, so it only happens when asked for explicitly
+    @Value("${migration.document-text.drop-inline-column:false}")
+    private boolean dropInlineColumn;
+
+    //Text used to be stored inline in document_extractions.extracted_text
+    //Copy it into compressed document_texts rows, the old column is left as it is
+    @PostConstruct
+    public void migrateInlineText() {
+        try {
+            Integer columns = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() " +
+                    "AND table_name = 'document_extractions' AND column_name = 'extracted_text'", Integer.class);
+            if (columns == null || columns == 0) {
+                return;
+            }
+
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            long afterId = 0;
+            int copied = 0;
+            while (true) {
+                //Rows without a text_id haven't been copied yet
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        "SELECT id, extracted_text FROM document_extractions WHERE id > ? AND extracted_text IS NOT NULL " +
+                        "AND text_id IS NULL ORDER BY id LIMIT " + BATCH_SIZE, afterId);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                transaction.executeWithoutResult(status -> {
+                    for (Map<String, Object> row : rows) {
+                        Long id = ((Number) row.get("id")).longValue();
+                        DocumentExtraction extraction = entityManager.find(DocumentExtraction.class, id);
+                        extraction.setText(DocumentText.of((String) row.get("extracted_text")));
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                afterId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+                copied += rows.size();
+                System.out.println("Copied text of " + copied + " documents to document_texts");
+            }
+
+            if (dropInlineColumn) {
+                dropInlineColumn();
+            } else if (copied > 0) {
+                System.out.println("document_extractions.extracted_text is no longer used, set migration.document-text.drop-inline-column=true to drop it");
+            }
+        } catch (Exception e) {
+            System.err.println("Could not move extracted text to document_texts: " + e.getMessage());
+        }
+    }
+
+    //Separate step, only once every inline text has its document_texts row
+    private void dropInlineColumn() {
+        Integer missing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document_extractions WHERE extracted_text IS NOT NULL AND text_id IS NULL", Integer.class);
+        if (missing != null && missing > 0) {
+            System.err.println("Not dropping document_extractions.extracted_text, " + missing + " documents haven't been copied");
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE document_extractions DROP COLUMN extracted_text");
+        System.out.println("Dropped document_extractions.extracted_text");
+    }
+}
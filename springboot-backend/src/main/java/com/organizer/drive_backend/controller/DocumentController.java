@@ -1,10 +1,14 @@
 package com.organizer.drive_backend.controller;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -19,21 +23,45 @@ import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentInfo;
+import com.organizer.drive_backend.model.DocumentSummary;
+import com.organizer.drive_backend.model.PageCursor;
+import com.organizer.drive_backend.model.PagedResponse;
 import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.service.DocumentSearchService;
+import com.organizer.drive_backend.service.TagExpression;
+import com.organizer.drive_backend.service.TagIndexService;
 
 @RestController
 @RequestMapping("/tags")
 public class DocumentController {
+    //Full-text hits read per round when filling a page of keyword results
+    private static final int SEARCH_BATCH_SIZE = 100;
 
     @Autowired
     private DocumentRepository documentRepository;
 
+    @Autowired
+    private DocumentSearchService documentSearchService;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Value("${document.classifier.url}")
     private String classifierBaseUrl;
 
+    @Value("${api.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${api.page.max-size:200}")
+    private int maxPageSize;
+
     @GetMapping("/supported")
     public ResponseEntity<Map<String, Object>> getSupportedTags() {
         try {
@@ -50,97 +78,216 @@ public class DocumentController {
     }
 
     //Endpoint to get all documents with a given tag
+    //Every list and search endpoint returns a page of at most limit documents, pass nextCursor as cursor for the next one
+    //With stream=true the whole result is streamed as a single JSON array instead
     @GetMapping("/by-tag/{tag}")
-    public ResponseEntity<List<Map<String, Object>>> getDocumentsByTag(@PathVariable String tag) {
-        List<DocumentExtraction> documents = documentRepository.findByTag(tag);
-
-        List<Map<String, Object>> result = documents.stream()
-                .map(this::convertToDocumentInfo)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(result);
+    public ResponseEntity<?> getDocumentsByTag(
+            @PathVariable String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean stream) {
+
+        Roaring64NavigableMap documentIds = tagIndexService.isReady()
+                ? tagIndexService.evaluate(new TagExpression.Tag(tag)) : null;
+        return respond(cursor, limit, stream, (after, pageSize) -> toPage(documentIds != null
+                ? documentRepository.findSummariesByIds(documentIds, null, after.afterIdOrStart(), pageSize + 1)
+                : documentRepository.findSummariesByTag(tag, after.afterIdOrStart(), pageSize + 1), pageSize));
     }
 
+    //tags takes any boolean tag expression, e.g. tags=research AND (legal OR compliance) AND NOT draft
+    //tag1..tag3 and type still work and are ANDed with it
+    //Tag filters are answered by the in-memory tag index, keyword matches come from the full-text index ranked by relevance
+    //While either index is still loading the database query is used instead
     @GetMapping("/search")
-    public ResponseEntity<List<Map<String, Object>>> searchDocuments(
+    public ResponseEntity<?> searchDocuments(
             @RequestParam(required = false) String tag1,
             @RequestParam(required = false) String tag2,
             @RequestParam(required = false) String tag3,
+            @RequestParam(required = false) String tags,
             @RequestParam(required = false) String keyword,
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean stream) {
+
+        boolean hasExpression = tags != null && !tags.isBlank();
+        if (tagIndexService.isReady()) {
+            Roaring64NavigableMap documentIds;
+            try {
+                documentIds = matchTags(hasExpression ? tags : null, tag1, tag2, tag3, type);
+            } catch (IllegalArgumentException e) {
+                return badRequest(e.getMessage());
+            }
+            if (documentIds == null && (keyword == null || keyword.isEmpty())) {
+                //Return empty result if no search criteria provided
+                return respond(cursor, limit, stream, (after, pageSize) -> new PagedResponse<>(List.of(), null));
+            }
+            return respond(cursor, limit, stream,
+                    (after, pageSize) -> findByIdsAndKeyword(documentIds, keyword, after, pageSize));
+        }
 
-        List<DocumentExtraction> documents;
+        //Arbitrary expressions can only be answered by the tag index
+        if (hasExpression) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Tag index is still loading, try again shortly");
+            return ResponseEntity.status(503).body(errorResponse);
+        }
 
-        //First handle type filter if specified
+        Predicate<DocumentSummary> filter;
         if (type != null) {
-            if (type.equalsIgnoreCase("academic")) {
-                documents = documentRepository.findAcademicDocuments();
-            } else if (type.equalsIgnoreCase("professional")) {
-                documents = documentRepository.findProfessionalDocuments();
-            } else {
-                documents = documentRepository.findAll();
-            }
-        } else if (tag1 != null || tag2 != null || tag3 != null) {
-            //Search by multiple tags
-            documents = documentRepository.findByMultipleTags(tag1, tag2, tag3);
-        } else if (keyword != null && !keyword.isEmpty()) {
-            //Search by text content only (with no specific tag)
-            documents = documentRepository.findAll().stream()
-                    .filter(doc -> doc.getExtractedText() != null &&
-                            doc.getExtractedText().contains(keyword))
-                    .collect(Collectors.toList());
+            filter = type.equalsIgnoreCase("academic") ? DocumentController::isAcademic
+                    : type.equalsIgnoreCase("professional") ? DocumentController::isProfessional
+                    : document -> true;
         } else {
-            //Return empty result if no search criteria provided
-            documents = List.of();
+            filter = document -> hasTag(document, tag1) && hasTag(document, tag2) && hasTag(document, tag3);
         }
 
-        //Apply additional keyword filter if both tags and keyword specified
-        if (keyword != null && !keyword.isEmpty() &&
-                (tag1 != null || tag2 != null || tag3 != null || type != null)) {
-            documents = documents.stream()
-                    .filter(doc -> doc.getExtractedText() != null &&
-                            doc.getExtractedText().contains(keyword))
-                    .collect(Collectors.toList());
-        }
+        return respond(cursor, limit, stream, (after, pageSize) -> {
+            PagedResponse<DocumentInfo> ranked = searchIndex(keyword, filter, after, pageSize);
+            if (ranked != null) {
+                return ranked;
+            }
 
-        //Create a stream from the list of filtered documents
-        //Convert each DocumentExtraction object into a Map using the convertToDocumentInfo function
-        //Collect all changed Maps into a list
-        List<Map<String, Object>> result = documents.stream()
-                .map(this::convertToDocumentInfo)
-                .collect(Collectors.toList());
+            String keywordPattern = DocumentRepository.likePattern(keyword);
+            long afterId = after.afterIdOrStart();
+            List<DocumentSummary> documents;
+
+            //First handle type filter if specified
+            if (type != null) {
+                if (type.equalsIgnoreCase("academic")) {
+                    documents = documentRepository.findAcademicSummaries(keywordPattern, afterId, pageSize + 1);
+                } else if (type.equalsIgnoreCase("professional")) {
+                    documents = documentRepository.findProfessionalSummaries(keywordPattern, afterId, pageSize + 1);
+                } else {
+                    documents = documentRepository.findSummariesByKeyword(keywordPattern, afterId, pageSize + 1);
+                }
+            } else if (tag1 != null || tag2 != null || tag3 != null) {
+                //Search by multiple tags
+                List<String> tagList = new ArrayList<>();
+                for (String tag : new String[] { tag1, tag2, tag3 }) {
+                    if (tag != null) {
+                        tagList.add(tag);
+                    }
+                }
+                documents = documentRepository.findSummariesWithAllTags(tagList, keywordPattern, afterId, pageSize + 1);
+            } else if (keywordPattern != null) {
+                //Search by text content only (with no specific tag)
+                documents = documentRepository.findSummariesByKeyword(keywordPattern, afterId, pageSize + 1);
+            } else {
+                //Return empty result if no search criteria provided
+                documents = List.of();
+            }
 
-        return ResponseEntity.ok(result);
+            return toPage(documents, pageSize);
+        });
     }
 
     @GetMapping("/search/academic")
-    public ResponseEntity<List<Map<String, Object>>> searchAcademicDocuments(
+    public ResponseEntity<?> searchAcademicDocuments(
             @RequestParam(required = false) String subject,
-            @RequestParam(required = false) String keyword) {
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean stream) {
+
+        boolean hasSubject = subject != null && !subject.isEmpty();
+        if (tagIndexService.isReady()) {
+            Roaring64NavigableMap documentIds = hasSubject
+                    ? tagIndexService.evaluate(new TagExpression.Tag(subject)) : tagIndexService.academic();
+            return respond(cursor, limit, stream,
+                    (after, pageSize) -> findByIdsAndKeyword(documentIds, keyword, after, pageSize));
+        }
 
-        List<DocumentExtraction> documents;
+        return respond(cursor, limit, stream, (after, pageSize) -> {
+            PagedResponse<DocumentInfo> ranked = searchIndex(keyword,
+                    document -> hasSubject ? hasTag(document, subject) : isAcademic(document), after, pageSize);
+            if (ranked != null) {
+                return ranked;
+            }
 
-        //If specific subject is provided, use it
-        if (subject != null && !subject.isEmpty()) {
-            documents = documentRepository.findByAcademicSubject(subject);
-        } else {
-            //Otherwise, get all academic documents
-            documents = documentRepository.findAcademicDocuments();
+            String keywordPattern = DocumentRepository.likePattern(keyword);
+            List<DocumentSummary> documents;
+
+            //If specific subject is provided, use it
+            if (hasSubject) {
+                documents = documentRepository.findSummariesByAcademicSubject(subject, keywordPattern,
+                        after.afterIdOrStart(), pageSize + 1);
+            } else {
+                //Otherwise, get all academic documents
+                documents = documentRepository.findAcademicSummaries(keywordPattern, after.afterIdOrStart(), pageSize + 1);
+            }
+
+            return toPage(documents, pageSize);
+        });
+    }
+
+    //Reads one page of documents starting after the cursor
+    @FunctionalInterface
+    private interface DocumentPages {
+        PagedResponse<DocumentInfo> page(PageCursor after, int pageSize);
+    }
+
+    //The requested page, or with stream=true every page from the cursor on written out as one JSON array
+    private ResponseEntity<?> respond(String cursor, Integer limit, boolean stream, DocumentPages pages) {
+        PageCursor start;
+        try {
+            start = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
         }
 
-        //Further filter by keyword if provided
-        if (keyword != null && !keyword.isEmpty()) {
-            documents = documents.stream()
-                    .filter(doc -> doc.getExtractedText() != null &&
-                            doc.getExtractedText().contains(keyword))
-                    .collect(Collectors.toList());
+        if (stream) {
+            return jsonArrayStreamer.stream((batchCursor, batchSize) ->
+                    pages.page(batchCursor == null ? start : PageCursor.decode(batchCursor), batchSize));
         }
+        return ResponseEntity.ok(pages.page(start, pageSize(limit)));
+    }
 
-        List<Map<String, Object>> result = documents.stream()
-                .map(this::convertToDocumentInfo)
-                .collect(Collectors.toList());
+    //IDs of the documents passing every tag and type filter given, null when there are none
+    private Roaring64NavigableMap matchTags(String expression, String tag1, String tag2, String tag3, String type) {
+        List<TagExpression> conditions = new ArrayList<>();
+        if (expression != null) {
+            conditions.add(TagExpression.parse(expression));
+        }
+        for (String tag : new String[] { tag1, tag2, tag3 }) {
+            if (tag != null) {
+                conditions.add(new TagExpression.Tag(tag));
+            }
+        }
+
+        Roaring64NavigableMap documentIds = conditions.isEmpty() ? null
+                : tagIndexService.evaluate(conditions.size() == 1 ? conditions.get(0) : new TagExpression.And(conditions));
+
+        Roaring64NavigableMap typeIds = null;
+        if (type != null && type.equalsIgnoreCase("academic")) {
+            typeIds = tagIndexService.academic();
+        } else if (type != null && type.equalsIgnoreCase("professional")) {
+            typeIds = tagIndexService.professional();
+        }
+        if (typeIds != null) {
+            if (documentIds == null) {
+                documentIds = typeIds;
+            } else {
+                documentIds.and(typeIds);
+            }
+        }
+        return documentIds;
+    }
+
+    //Documents among the given IDs (any document when null) whose text contains the keyword, or all of them without one
+    private PagedResponse<DocumentInfo> findByIdsAndKeyword(Roaring64NavigableMap documentIds, String keyword,
+                                                           PageCursor after, int pageSize) {
+        PagedResponse<DocumentInfo> ranked = searchIndex(keyword,
+                document -> documentIds == null || documentIds.contains(document.getId()), after, pageSize);
+        if (ranked != null) {
+            return ranked;
+        }
 
-        return ResponseEntity.ok(result);
+        String keywordPattern = DocumentRepository.likePattern(keyword);
+        if (documentIds == null) {
+            return toPage(documentRepository.findSummariesByKeyword(keywordPattern, after.afterIdOrStart(), pageSize + 1), pageSize);
+        }
+        return toPage(documentRepository.findSummariesByIds(documentIds, keywordPattern, after.afterIdOrStart(), pageSize + 1), pageSize);
     }
 
     @GetMapping("/categories")
@@ -189,6 +336,7 @@ public class DocumentController {
             }
 
             documentRepository.save(document);
+            tagIndexService.update(document);
 
             return ResponseEntity.ok(convertToDocumentInfo(document));
         } catch (Exception e) {
@@ -198,6 +346,99 @@ public class DocumentController {
         }
     }
 
+    //Documents matching the keyword in the search index, best match first, that also pass the filter
+    //Hits are read in batches from the cursor's position until the page is full, so filtered-out hits don't shorten it
+    //Returns null when there is no keyword or the index can't be used, the caller then queries the database
+    private PagedResponse<DocumentInfo> searchIndex(String keyword, Predicate<DocumentSummary> filter,
+                                                    PageCursor after, int pageSize) {
+        if (keyword == null || keyword.isEmpty() || !documentSearchService.isReady()) {
+            return null;
+        }
+
+        DocumentSearchService.SearchHit resumeAfter = after.isRanked()
+                ? new DocumentSearchService.SearchHit(after.getAfterFileId(), after.getAfterScore()) : null;
+        int batchSize = Math.max(pageSize + 1, SEARCH_BATCH_SIZE);
+        List<DocumentInfo> results = new ArrayList<>();
+        try {
+            while (results.size() <= pageSize) {
+                List<DocumentSearchService.SearchHit> hits = documentSearchService.search(keyword, resumeAfter, batchSize);
+                if (hits.isEmpty()) {
+                    break;
+                }
+
+                Map<String, Float> scores = new HashMap<>();
+                List<String> fileIds = new ArrayList<>(hits.size());
+                for (DocumentSearchService.SearchHit hit : hits) {
+                    scores.put(hit.fileId(), hit.score());
+                    fileIds.add(hit.fileId());
+                }
+                for (DocumentSummary summary : documentRepository.findSummariesInOrder(fileIds)) {
+                    if (results.size() > pageSize) {
+                        break;
+                    }
+                    if (filter.test(summary)) {
+                        DocumentInfo info = DocumentInfo.from(summary);
+                        info.setScore((double) scores.get(summary.getFileId()));
+                        results.add(info);
+                    }
+                }
+
+                if (hits.size() < batchSize) {
+                    break;
+                }
+                resumeAfter = hits.get(hits.size() - 1);
+            }
+        } catch (IOException e) {
+            System.err.println("Search index query failed, falling back to the database: " + e.getMessage());
+            return null;
+        }
+
+        if (results.size() <= pageSize) {
+            return new PagedResponse<>(results, null);
+        }
+        List<DocumentInfo> page = new ArrayList<>(results.subList(0, pageSize));
+        DocumentInfo last = page.get(pageSize - 1);
+        return new PagedResponse<>(page, PageCursor.afterHit(last.getScore().floatValue(), last.getFileId()).encode());
+    }
+
+    //Exact tag match, the same as the document_tags conditions in DocumentRepository
+    private static boolean hasTag(DocumentSummary document, String tag) {
+        return tag == null || DocumentExtraction.splitTags(document.getTags()).contains(tag);
+    }
+
+    private static boolean isAcademic(DocumentSummary document) {
+        return "academic".equals(document.getDocumentType());
+    }
+
+    //Documents without tags are neither, like PROFESSIONAL_TAGS_CONDITION which is never true for NULL tags
+    private static boolean isProfessional(DocumentSummary document) {
+        return document.getTags() != null && !isAcademic(document);
+    }
+
+    //Documents were fetched with one extra row, if it is there the page isn't the last one
+    private PagedResponse<DocumentInfo> toPage(List<DocumentSummary> documents, int pageSize) {
+        List<DocumentInfo> items = documents.stream()
+                .limit(pageSize)
+                .map(DocumentInfo::from)
+                .collect(Collectors.toList());
+        String nextCursor = documents.size() > pageSize
+                ? PageCursor.afterId(items.get(pageSize - 1).getId()).encode() : null;
+        return new PagedResponse<>(items, nextCursor);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit < 1) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return ResponseEntity.status(400).body(errorResponse);
+    }
+
     //Convert database entry to a Map for API usage
     private Map<String, Object> convertToDocumentInfo(DocumentExtraction document) {
         Map<String, Object> info = new HashMap<>();
@@ -1,9 +1,11 @@
 package com.organizer.drive_backend.controller;
 
+import com.organizer.drive_backend.model.PagedResponse;
 import com.organizer.drive_backend.repository.DocumentRepository;
 import com.organizer.drive_backend.service.FirebaseAuthService;
 import com.organizer.drive_backend.service.UserFileService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -19,8 +21,22 @@ public class FileController {
     @Autowired
     private FirebaseAuthService firebaseAuthService;
 
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+
+    @Value("${api.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${api.page.max-size:200}")
+    private int maxPageSize;
+
+    //Returns a page of files, pass nextCursor back as cursor for the next one
+    //With stream=true every file is streamed as one JSON array, read from Drive a page at a time
     @GetMapping("/files")
-    public Object getUserFiles(@RequestHeader("Authorization") String authHeader) {
+    public Object getUserFiles(@RequestHeader("Authorization") String authHeader,
+                               @RequestParam(required = false) String cursor,
+                               @RequestParam(required = false) Integer limit,
+                               @RequestParam(defaultValue = "false") boolean stream) {
         String firebaseUID;
         try {
             //Check if user is authorized
@@ -37,9 +53,16 @@ public class FileController {
             return "Authentication failed: " + e.getMessage();
         }
 
+        if (stream) {
+            String uid = firebaseUID;
+            return jsonArrayStreamer.stream((batchCursor, batchSize) ->
+                    userFileService.getUserFiles(uid, batchCursor != null ? batchCursor : cursor, batchSize));
+        }
+
         try {
-            List<Map<String, Object>> userFiles = userFileService.getUserFiles(firebaseUID);
-            System.out.println("Found " + userFiles.size() + " files for user: " + firebaseUID);
+            int pageSize = limit == null || limit < 1 ? defaultPageSize : Math.min(limit, maxPageSize);
+            PagedResponse<Map<String, Object>> userFiles = userFileService.getUserFiles(firebaseUID, cursor, pageSize);
+            System.out.println("Found " + userFiles.getItems().size() + " files for user: " + firebaseUID);
             return userFiles;
 
         } catch (Exception e) {
@@ -0,0 +1,64 @@
+package com.organizer.drive_backend.controller;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.drive_backend.model.PagedResponse;
+
+//Writes a whole result set as one JSON array without holding it in memory
+//Rows are read a batch at a time from a keyset-paged source and written to the response as each batch arrives,
+//so only one batch is on the heap whatever the result size
+@Component
+public class JsonArrayStreamer {
+    //The source of the result, called with the previous batch's nextCursor until it returns null
+    @FunctionalInterface
+    public interface PageSource<T> {
+        PagedResponse<T> page(String cursor, int pageSize) throws Exception;
+    }
+
+    //Spring's mapper, so streamed items are serialised the same way as regular responses
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${api.stream.batch-size:500}")
+    private int batchSize;
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(PageSource<T> source) {
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            //A failure part way must leave the array unterminated, so the client can't mistake it for the full result
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            long written = 0;
+            try {
+                generator.writeStartArray();
+                String cursor = null;
+                do {
+                    PagedResponse<T> page = source.page(cursor, batchSize);
+                    for (T item : page.getItems()) {
+                        generator.writeObject(item);
+                    }
+                    written += page.getItems().size();
+                    //Send the batch on before reading the next one
+                    generator.flush();
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                generator.writeEndArray();
+                generator.close();
+            } catch (Exception e) {
+                System.err.println("Streaming response failed after " + written + " items: " + e.getMessage());
+                throw e instanceof IOException io ? io : new IOException(e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
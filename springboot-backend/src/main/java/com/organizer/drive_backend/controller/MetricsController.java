@@ -0,0 +1,69 @@
+package com.organizer.drive_backend.controller;
+
+import com.organizer.drive_backend.extraction.ExtractionScheduler;
+import com.organizer.drive_backend.service.DocumentSearchService;
+import com.organizer.drive_backend.service.DocumentTaggerService;
+import com.organizer.drive_backend.service.DriveClientService;
+import com.organizer.drive_backend.service.ProcessDocumentService;
+import com.organizer.drive_backend.service.TagIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+    @Autowired
+    private DriveClientService driveClientService;
+
+    @Autowired
+    private DocumentTaggerService documentTaggerService;
+
+    @Autowired
+    private ExtractionScheduler extractionScheduler;
+
+    @Autowired
+    private ProcessDocumentService processDocumentService;
+
+    @Autowired
+    private DocumentSearchService documentSearchService;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    //Connection pool and token refresh numbers of the shared Drive client
+    @GetMapping("/drive")
+    public Map<String, Object> getDriveMetrics() {
+        return driveClientService.getPoolMetrics();
+    }
+
+    //Circuit breaker state, bulkhead rejections and latency of the classifier client
+    @GetMapping("/classifier")
+    public Map<String, Object> getClassifierMetrics() {
+        return documentTaggerService.getClientMetrics();
+    }
+
+    //Heap budget use and admitted/queued/rejected extraction counts, plus the worker pool and timeouts
+    @GetMapping("/extraction")
+    public Map<String, Object> getExtractionMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(extractionScheduler.getMetrics());
+        metrics.put("workers", processDocumentService.getWorkerMetrics());
+        return metrics;
+    }
+
+    //Full-text index size, whether it is ready, and search latency
+    @GetMapping("/search")
+    public Map<String, Object> getSearchMetrics() {
+        return documentSearchService.getMetrics();
+    }
+
+    //Documents and tags in the tag index, bitmap memory and query latency
+    @GetMapping("/tags")
+    public Map<String, Object> getTagIndexMetrics() {
+        return tagIndexService.getMetrics();
+    }
+}
@@ -1,14 +1,23 @@
 package com.organizer.drive_backend.controller;
 
+import com.organizer.drive_backend.model.BatchJob;
+import com.organizer.drive_backend.service.BatchJobService;
 import com.organizer.drive_backend.service.BatchProcessService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/process")
@@ -16,8 +25,75 @@ public class ProcessController {
     @Autowired
     private BatchProcessService batchProcessService;
 
+    @Autowired
+    private BatchJobService batchJobService;
+
+    //Starts a batch job over the Drive folder and returns its progress straight away
+    //incremental=true only looks at files modified since the last completed run
     @GetMapping("/drive-files")
-    public Map<String, String> processDriveFolder() throws IOException, GeneralSecurityException {
-        return batchProcessService.batchProcess();
+    public ResponseEntity<?> processDriveFolder(@RequestParam(defaultValue = "false") boolean incremental) {
+        return startJob(incremental);
+    }
+
+    @PostMapping("/jobs")
+    public ResponseEntity<?> startJob(@RequestParam(defaultValue = "false") boolean incremental) {
+        return handleJob(() -> {
+            BatchJob job = batchJobService.startJob(incremental);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchJobService.getProgress(job.getId()));
+        });
+    }
+
+    //Done/failed/skipped/remaining counts, rate and ETA
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJobProgress(@PathVariable Long jobId) {
+        return handleJob(() -> ResponseEntity.ok(batchJobService.getProgress(jobId)));
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable Long jobId) {
+        return handleJob(() -> {
+            batchJobService.cancelJob(jobId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchJobService.getProgress(jobId));
+        });
+    }
+
+    //Continue from the last checkpoint, files already handled by the job are not processed again
+    @PostMapping("/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeJob(@PathVariable Long jobId) {
+        return handleJob(() -> {
+            batchJobService.resumeJob(jobId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchJobService.getProgress(jobId));
+        });
+    }
+
+    //Files the job failed on with the error for each
+    @GetMapping("/jobs/{jobId}/failures")
+    public ResponseEntity<?> getJobFailures(@PathVariable Long jobId) {
+        return handleJob(() -> ResponseEntity.ok(batchJobService.getFailedFiles(jobId)));
+    }
+
+    //Per-stage throughput of the last batch run
+    @GetMapping("/drive-files/stats")
+    public List<Map<String, Object>> getLastRunStats() {
+        return batchProcessService.getLastRunStats().stream()
+                .map(stats -> stats.toMap())
+                .collect(Collectors.toList());
+    }
+
+    //Unknown jobs are a 404, jobs in the wrong state (or a folder that is busy) a 409
+    private ResponseEntity<?> handleJob(Supplier<ResponseEntity<?>> action) {
+        try {
+            return action.get();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorBody(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorBody(e.getMessage()));
+        }
+    }
+
+    private Map<String, String> errorBody(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return error;
     }
 }
@@ -1,18 +1,38 @@
 package com.organizer.drive_backend.controller;
 
+import com.organizer.drive_backend.extraction.ContentHash;
 import com.organizer.drive_backend.model.Response;
+import com.organizer.drive_backend.model.UploadJob;
+import com.organizer.drive_backend.service.ExtractorRegistry;
+import com.organizer.drive_backend.service.UploadJobService;
 import com.organizer.drive_backend.service.UploadService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.web.bind.annotation.RequestHeader;
 import com.organizer.drive_backend.service.FirebaseAuthService;
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 public class UploadController {
@@ -23,9 +43,17 @@ public class UploadController {
     @Autowired
     private FirebaseAuthService firebaseAuthService;
 
+    @Autowired
+    private UploadJobService uploadJobService;
+
+    @Autowired
+    private ExtractorRegistry extractorRegistry;
+
     //POST Endpoint
     @PostMapping("/upload")
+    //async=true answers 202 with a job ID and processes the upload in the background
     public Object handleFileUpload(@RequestParam("document")MultipartFile file,
+                                   @RequestParam(defaultValue = "false") boolean async,
                                    @RequestHeader("Authorization") String authHeader) throws IOException, GeneralSecurityException {
         //Firebase Authentication
         String firebaseUID;
@@ -56,9 +84,7 @@ public class UploadController {
         String contentType = file.getContentType();
 
         //Check if file is accepted (PDF, or doc/docx files)
-        if (contentType == null || !(contentType.equals("application/pdf") ||
-                contentType.equals("application/msword") ||
-                contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))) {
+        if (!isSupportedContentType(contentType)) {
             return "Only PDF and Word documents are allowed";
         }
 
@@ -84,13 +110,37 @@ public class UploadController {
         System.out.println("Created temp file: " + tempFile.getAbsolutePath() +
                 " for original file: " + originalFilename);
 
-        //Transfer contents of uploaded file to the temp file
-        file.transferTo(tempFile);
+        //Transfer contents of uploaded file to the temp file, hashing the bytes as they are written
+        MessageDigest digest = ContentHash.newDigest();
+        try (InputStream inputStream = file.getInputStream();
+             OutputStream outputStream = new DigestOutputStream(new FileOutputStream(tempFile), digest)) {
+            inputStream.transferTo(outputStream);
+        }
+        String contentHash = ContentHash.toHex(digest);
+
+        //Hand the stored file to a background job, the job deletes it when done
+        if (async) {
+            try {
+                UploadJob job = uploadJobService.submit(tempFile, contentHash, contentType, originalFilename, firebaseUID);
+
+                Map<String, Object> accepted = new HashMap<>();
+                accepted.put("jobId", job.getJobId());
+                accepted.put("status", job.getStatus());
+                accepted.put("statusUrl", "/upload/jobs/" + job.getJobId());
+                accepted.put("eventsUrl", "/upload/jobs/" + job.getJobId() + "/events");
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(accepted);
+            } catch (RejectedExecutionException e) {
+                if (!tempFile.delete()) {
+                    System.err.println("Failed to delete temporary file: " + tempFile.getAbsolutePath());
+                }
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Upload queue is full, try again later");
+            }
+        }
 
         //Execute the upload service method to upload the file
         try {
             //Execute the upload service method to upload the file (now with Firebase UID)
-            Response response = uploadService.uploadFileToDrive(tempFile, contentType, originalFilename, firebaseUID);
+            Response response = uploadService.uploadFileToDrive(tempFile, contentHash, contentType, originalFilename, firebaseUID);
             System.out.println("Upload response: " + response);
             return response;
         } catch (Exception e) {
@@ -103,4 +153,104 @@ public class UploadController {
             }
         }
     }
+
+    //POST Endpoint for streamed uploads
+    //The request body is the document itself and its name is sent URL encoded in the X-File-Name header
+    //The body is read once and never copied to a multipart temp file
+    @PostMapping("/upload/stream")
+    public Object handleStreamUpload(HttpServletRequest request,
+                                     @RequestHeader("X-File-Name") String encodedFileName,
+                                     @RequestHeader("Authorization") String authHeader) throws IOException {
+        //Firebase Authentication
+        String firebaseUID;
+        try {
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return "Missing or invalid Authorization header";
+            }
+
+            String idToken = authHeader.replace("Bearer ", "");
+            firebaseUID = firebaseAuthService.verifyTokenAndGetUID(idToken);
+            System.out.println("Authenticated user UID: " + firebaseUID);
+
+        } catch (Exception e) {
+            System.err.println("Authentication failed: " + e.getMessage());
+            return "Authentication failed: " + e.getMessage();
+        }
+
+        //Check if body is empty
+        if (request.getContentLengthLong() == 0) {
+            return "File is not valid";
+        }
+
+        //Content type of the body without parameters such as charset
+        String contentType = request.getContentType() != null ? request.getContentType().split(";")[0].trim() : null;
+        if (!isSupportedContentType(contentType)) {
+            return "Only PDF and Word documents are allowed";
+        }
+
+        String originalFilename = URLDecoder.decode(encodedFileName, StandardCharsets.UTF_8);
+
+        try {
+            Response response = uploadService.uploadStreamToDrive(request.getInputStream(), contentType, originalFilename, firebaseUID);
+            System.out.println("Upload response: " + response);
+            return response;
+        } catch (Exception e) {
+            System.err.println("Upload failed: " + e.getMessage());
+            return "Upload failed: " + e.getMessage();
+        }
+    }
+
+    //Current state of a background upload, including the final Response once it is done
+    @GetMapping("/upload/jobs/{jobId}")
+    public Object getUploadJob(@PathVariable String jobId,
+                               @RequestHeader("Authorization") String authHeader) {
+        String firebaseUID;
+        try {
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header");
+            }
+
+            String idToken = authHeader.replace("Bearer ", "");
+            firebaseUID = firebaseAuthService.verifyTokenAndGetUID(idToken);
+        } catch (Exception e) {
+            System.err.println("Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication failed: " + e.getMessage());
+        }
+
+        UploadJob job = uploadJobService.getJob(jobId, firebaseUID);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload job not found");
+        }
+        return job;
+    }
+
+    //Server-Sent Events stream with "progress" events and a final "complete" event
+    @GetMapping(value = "/upload/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Object streamUploadJob(@PathVariable String jobId,
+                                  @RequestHeader("Authorization") String authHeader) {
+        String firebaseUID;
+        try {
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header");
+            }
+
+            String idToken = authHeader.replace("Bearer ", "");
+            firebaseUID = firebaseAuthService.verifyTokenAndGetUID(idToken);
+        } catch (Exception e) {
+            System.err.println("Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication failed: " + e.getMessage());
+        }
+
+        UploadJob job = uploadJobService.getJob(jobId, firebaseUID);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload job not found");
+        }
+        return uploadJobService.subscribe(job);
+    }
+
+    //PDF, or doc/docx files
+    //Formats with a registered extractor, the bytes are checked again when the text is extracted
+    private boolean isSupportedContentType(String contentType) {
+        return contentType != null && extractorRegistry.supports(contentType);
+    }
 }
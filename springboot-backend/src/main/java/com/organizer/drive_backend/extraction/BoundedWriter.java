@@ -0,0 +1,82 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+
+//Writer that passes on at most maxChars characters and then refuses further writes
+//Extractors stop as soon as the limit is hit, so a huge document never turns into a huge String
+public class BoundedWriter extends Writer {
+
+    //Thrown once the limit is reached so the extractor stops producing text
+    public static class LimitReachedException extends IOException {
+        public LimitReachedException(long maxChars) {
+            super("Text limit of " + maxChars + " characters reached");
+        }
+    }
+
+    private final Writer delegate;
+    private final long maxChars;
+    private long written;
+    private boolean truncated;
+
+    public BoundedWriter(Writer delegate, long maxChars) {
+        this.delegate = delegate;
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        int allowed = reserve(length);
+        delegate.write(buffer, offset, allowed);
+        checkLimit(allowed, length);
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        int allowed = reserve(length);
+        delegate.write(text, offset, allowed);
+        checkLimit(allowed, length);
+    }
+
+    //How many of the next length characters still fit under the limit
+    //Also where an extraction that ran out of time notices it was cancelled
+    private int reserve(int length) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Extraction was cancelled");
+        }
+        if (truncated) {
+            throw new LimitReachedException(maxChars);
+        }
+        int allowed = (int) Math.min(length, maxChars - written);
+        written += allowed;
+        return allowed;
+    }
+
+    //Keep what still fitted, then stop the extractor
+    private void checkLimit(int allowed, int length) throws LimitReachedException {
+        if (allowed < length) {
+            truncated = true;
+            throw new LimitReachedException(maxChars);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    //The delegate belongs to the caller, it is not closed here
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long getCharsWritten() {
+        return written;
+    }
+}
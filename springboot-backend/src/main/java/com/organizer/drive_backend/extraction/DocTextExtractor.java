@@ -0,0 +1,46 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+//Legacy Word (.doc) text with POI HWPF
+@Component
+public class DocTextExtractor implements TextExtractor {
+    //OLE2 compound document header, shared by .doc, .xls and .ppt
+    private static final byte[] SIGNATURE = {
+            (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1
+    };
+
+    @Autowired
+    private ExtractionScheduler extractionScheduler;
+
+    @Override
+    public String mimeType() {
+        return "application/msword";
+    }
+
+    @Override
+    public boolean matches(byte[] header) {
+        return TextExtractor.startsWith(header, SIGNATURE);
+    }
+
+    @Override
+    public void writeText(DocumentSource source, Writer out) throws IOException {
+        long cost = extractionScheduler.estimateCost(source.size(), mimeType(), 0);
+        try (ExtractionScheduler.Permit permit = extractionScheduler.admitOrThrow(cost, source.name());
+             InputStream inputStream = source.openStream();
+             HWPFDocument document = new HWPFDocument(inputStream)) {
+            WordExtractor wordExtractor = new WordExtractor(document);
+
+            for (String paragraph : wordExtractor.getParagraphText()) {
+                out.write(paragraph);
+            }
+        }
+    }
+}
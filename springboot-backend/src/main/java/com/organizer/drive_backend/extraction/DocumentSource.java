@@ -0,0 +1,87 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+
+//Bytes of a document to extract text from, can be opened as often as an extractor needs
+public interface DocumentSource {
+
+    //Shown in logs and rejection messages
+    String name();
+
+    long size();
+
+    InputStream openStream() throws IOException;
+
+    //Random access view for PDFBox, every call returns an independent handle
+    RandomAccessRead openRandomAccess() throws IOException;
+
+    //First bytes of the document, used to recognise the format
+    default byte[] readHeader(int length) throws IOException {
+        try (InputStream inputStream = openStream()) {
+            return inputStream.readNBytes(length);
+        }
+    }
+
+    static DocumentSource of(File file) {
+        return new DocumentSource() {
+            @Override
+            public String name() {
+                return file.getName();
+            }
+
+            @Override
+            public long size() {
+                return file.length();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public RandomAccessRead openRandomAccess() throws IOException {
+                return new RandomAccessReadBufferedFile(file);
+            }
+        };
+    }
+
+    //Reads straight from memory when the upload wasn't spooled to disk
+    static DocumentSource of(UploadSpool spool) {
+        if (!spool.isInMemory()) {
+            return of(spool.getFile());
+        }
+
+        ByteBuffer buffer = spool.asByteBuffer();
+        return new DocumentSource() {
+            @Override
+            public String name() {
+                return "upload";
+            }
+
+            @Override
+            public long size() {
+                return spool.size();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return spool.openInputStream();
+            }
+
+            @Override
+            public RandomAccessRead openRandomAccess() {
+                //duplicate() gives every handle its own position over the same bytes
+                return new RandomAccessReadBuffer(buffer.duplicate());
+            }
+        };
+    }
+}
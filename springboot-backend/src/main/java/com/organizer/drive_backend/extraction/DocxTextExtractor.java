@@ -0,0 +1,184 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+//Word (.docx) text read straight from word/document.xml with a SAX parser
+//Never builds the XWPF object model, memory stays flat however large the document is
+@Component
+public class DocxTextExtractor implements TextExtractor {
+    //ZIP local file header, every OOXML file starts with it
+    private static final byte[] SIGNATURE = {0x50, 0x4B, 0x03, 0x04};
+
+    private static final String MAIN_PART = "word/document.xml";
+    private static final String WORD_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    @Autowired
+    private ExtractionScheduler extractionScheduler;
+
+    private final SAXParserFactory parserFactory = createParserFactory();
+
+    @Override
+    public String mimeType() {
+        return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    }
+
+    @Override
+    public boolean matches(byte[] header) {
+        return TextExtractor.startsWith(header, SIGNATURE);
+    }
+
+    @Override
+    public void writeText(DocumentSource source, Writer out) throws IOException {
+        long cost = extractionScheduler.estimateCost(source.size(), mimeType(), 0);
+        try (ExtractionScheduler.Permit permit = extractionScheduler.admitOrThrow(cost, source.name());
+             ZipInputStream zip = new ZipInputStream(source.openStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (MAIN_PART.equals(entry.getName())) {
+                    parse(zip, out);
+                    return;
+                }
+            }
+        }
+        throw new IOException("Not a Word document, " + MAIN_PART + " is missing from " + source.name());
+    }
+
+    private void parse(InputStream documentXml, Writer out) throws IOException {
+        try {
+            SAXParser parser = parserFactory.newSAXParser();
+            parser.parse(documentXml, new TextHandler(out));
+        } catch (SAXException e) {
+            //Writer errors (including the character limit) are passed through the parser wrapped
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
+            throw new IOException("Invalid " + MAIN_PART + ": " + e.getMessage(), e);
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static SAXParserFactory createParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            //document.xml comes from users, no DTDs or external entities
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not configure XML parser", e);
+        }
+        return factory;
+    }
+
+    //Writes the text of w:t runs, tabs and breaks, one line per paragraph and per table row
+    private static final class TextHandler extends DefaultHandler {
+        private final Writer out;
+        private boolean inText;
+        //w:tab also appears in paragraph properties as a tab stop, only tabs and breaks inside runs are text
+        private int runDepth;
+        //Text inside deleted revisions is not part of the document
+        private int deletedDepth;
+        //Paragraphs inside a table cell are joined with spaces, cells with tabs and rows end a line
+        private int cellDepth;
+        private int cellParagraphs;
+
+        private TextHandler(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (!WORD_NAMESPACE.equals(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "r" -> runDepth++;
+                case "tc" -> {
+                    cellDepth++;
+                    cellParagraphs = 0;
+                }
+                case "p" -> {
+                    if (cellDepth > 0 && cellParagraphs++ > 0) {
+                        write(" ");
+                    }
+                }
+                case "t" -> inText = true;
+                case "del" -> deletedDepth++;
+                case "tab" -> writeInRun("\t");
+                case "br", "cr" -> writeInRun("\n");
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (!WORD_NAMESPACE.equals(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "r" -> runDepth--;
+                case "t" -> inText = false;
+                case "del" -> deletedDepth--;
+                case "p" -> {
+                    if (cellDepth == 0) {
+                        write("\n");
+                    }
+                }
+                case "tc" -> {
+                    cellDepth--;
+                    write("\t");
+                }
+                case "tr" -> write("\n");
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (inText && deletedDepth == 0) {
+                try {
+                    out.write(ch, start, length);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            }
+        }
+
+        private void writeInRun(String text) throws SAXException {
+            if (runDepth > 0) {
+                write(text);
+            }
+        }
+
+        private void write(String text) throws SAXException {
+            if (deletedDepth > 0) {
+                return;
+            }
+            try {
+                out.write(text);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.organizer.drive_backend.extraction;
+
+//Text pulled out of a document, truncated is true when it was cut off at the character limit
+public record ExtractedText(String text, boolean truncated) {
+}
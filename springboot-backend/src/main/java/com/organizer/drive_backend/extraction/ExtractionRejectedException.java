@@ -0,0 +1,11 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+
+//Thrown when an extraction can't be admitted, the queue is full or it waited too long for heap budget
+//An IOException so callers treat it like any other failed extraction
+public class ExtractionRejectedException extends IOException {
+    public ExtractionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,230 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+//Admits extractions only while their estimated heap use fits in a budget, the rest wait in FIFO order
+//Keeps concurrent uploads and a batch run from loading more PDFBox/POI documents than the heap can hold
+@Service
+public class ExtractionScheduler {
+
+    //Heap all running extractions may use together, 0 means a share of -Xmx
+    @Value("${extraction.scheduler.heap-budget-bytes:0}")
+    private long budgetBytes;
+
+    //Share of the max heap used when no budget is configured
+    @Value("${extraction.scheduler.heap-budget-fraction:0.4}")
+    private double budgetFraction;
+
+    //Extractions allowed to wait for budget before new ones are rejected
+    @Value("${extraction.scheduler.max-queued:100}")
+    private int maxQueued;
+
+    //How long one extraction waits for budget before it is rejected
+    @Value("${extraction.scheduler.max-wait-ms:120000}")
+    private long maxWaitMs;
+
+    //Rough heap use per byte of input
+    //DOCX is read with a streaming SAX parser, so it only needs buffers, not a model of the document
+    @Value("${extraction.scheduler.pdf-bytes-factor:3}")
+    private double pdfBytesFactor;
+
+    @Value("${extraction.scheduler.pdf-bytes-per-page:65536}")
+    private long pdfBytesPerPage;
+
+    @Value("${extraction.scheduler.docx-bytes-factor:2}")
+    private double docxBytesFactor;
+
+    @Value("${extraction.scheduler.doc-bytes-factor:6}")
+    private double docBytesFactor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private long inUseBytes;
+    private int running;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    //Held while an extraction runs, closing it gives the budget back
+    public final class Permit implements AutoCloseable {
+        private final long bytes;
+        private boolean released;
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (released) {
+                    return;
+                }
+                released = true;
+                inUseBytes -= bytes;
+                running--;
+                signalHead();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final long bytes;
+        private final Condition turn;
+        private final Thread thread;
+
+        private Waiter(long bytes, Condition turn, Thread thread) {
+            this.bytes = bytes;
+            this.turn = turn;
+            this.thread = thread;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (budgetBytes <= 0) {
+            budgetBytes = (long) (Runtime.getRuntime().maxMemory() * budgetFraction);
+        }
+        System.out.println("Extraction heap budget: " + budgetBytes / (1024 * 1024) + " MB");
+    }
+
+    //Estimated heap an extraction needs, pageCount is only known for PDFs (0 otherwise)
+    public long estimateCost(long sizeBytes, String mimeType, int pageCount) {
+        if ("application/pdf".equals(mimeType)) {
+            return (long) (sizeBytes * pdfBytesFactor) + pageCount * pdfBytesPerPage;
+        } else if ("application/vnd.openxmlformats-officedocument.wordprocessingml.document".equals(mimeType)) {
+            return (long) (sizeBytes * docxBytesFactor);
+        } else if ("application/msword".equals(mimeType)) {
+            return (long) (sizeBytes * docBytesFactor);
+        }
+        return sizeBytes;
+    }
+
+    //Block until the cost fits in the budget, a document bigger than the whole budget runs on its own
+    //Throws ExtractionRejectedException when too many are waiting or the wait takes longer than max-wait-ms
+    public Permit admit(long costBytes, String description) throws ExtractionRejectedException, InterruptedException {
+        long bytes = Math.max(1, Math.min(costBytes, budgetBytes));
+
+        lock.lock();
+        try {
+            //Nobody ahead of us and it fits, run straight away
+            if (waiting.isEmpty() && fits(bytes)) {
+                return grant(bytes);
+            }
+
+            if (waiting.size() >= maxQueued) {
+                rejected.incrementAndGet();
+                throw new ExtractionRejectedException("Extraction queue is full, rejected " + description);
+            }
+
+            Waiter waiter = new Waiter(bytes, lock.newCondition(), Thread.currentThread());
+            waiting.addLast(waiter);
+            queued.incrementAndGet();
+            long start = System.nanoTime();
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            try {
+                //FIFO so a big document isn't passed over forever by small ones
+                while (waiting.peekFirst() != waiter || !fits(bytes)) {
+                    if (remainingNanos <= 0) {
+                        rejected.incrementAndGet();
+                        throw new ExtractionRejectedException("Timed out waiting for extraction memory, rejected " + description);
+                    }
+                    remainingNanos = waiter.turn.awaitNanos(remainingNanos);
+                }
+                return grant(bytes);
+            } finally {
+                waiting.remove(waiter);
+                totalWaitNanos.addAndGet(System.nanoTime() - start);
+                //The next one in line may fit now, or may have moved to the head because we left
+                signalHead();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Same as admit, with an interrupt reported as an IOException like any other failed extraction
+    public Permit admitOrThrow(long costBytes, String description) throws IOException {
+        try {
+            return admit(costBytes, description);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to extract " + description, e);
+        }
+    }
+
+    //Whether the thread is waiting for budget, time spent here doesn't count against an extraction's time budget
+    public boolean isWaiting(Thread thread) {
+        lock.lock();
+        try {
+            for (Waiter waiter : waiting) {
+                if (waiter.thread == thread) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return running == 0 || inUseBytes + bytes <= budgetBytes;
+    }
+
+    private Permit grant(long bytes) {
+        inUseBytes += bytes;
+        running++;
+        admitted.incrementAndGet();
+        return new Permit(bytes);
+    }
+
+    private void signalHead() {
+        Waiter head = waiting.peekFirst();
+        if (head != null) {
+            head.turn.signal();
+        }
+    }
+
+    //Budget use and admission counts for the metrics endpoint
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            metrics.put("budgetBytes", budgetBytes);
+            metrics.put("inUseBytes", inUseBytes);
+            metrics.put("running", running);
+            metrics.put("waiting", waiting.size());
+        } finally {
+            lock.unlock();
+        }
+        metrics.put("admitted", admitted.get());
+        metrics.put("queued", queued.get());
+        metrics.put("rejected", rejected.get());
+        long queuedCount = queued.get();
+        metrics.put("averageWaitMs", queuedCount > 0 ? totalWaitNanos.get() / queuedCount / 1_000_000.0 : 0);
+        return metrics;
+    }
+}
@@ -0,0 +1,11 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+
+//Thrown when a document takes longer than extraction.timeout-ms, or isn't done by extraction.deadline-ms
+//after it was submitted, the extraction is abandoned
+public class ExtractionTimeoutException extends IOException {
+    public ExtractionTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,198 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+//PDF text with PDFBox, large documents are split into page ranges extracted in parallel
+@Component
+public class PdfTextExtractor implements TextExtractor {
+    //PDF readers accept the header anywhere in the first 1024 bytes
+    private static final byte[] SIGNATURE = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    //Holds each extraction back until its estimated heap use fits in the budget
+    @Autowired
+    private ExtractionScheduler extractionScheduler;
+
+    //Shared by the parallel ranges of a document, so together they stay within the document limit
+    @Value("${extraction.max-chars:2000000}")
+    private long maxChars;
+
+    //Heap PDFBox may use for one document's buffers before it moves them to a scratch file
+    @Value("${extraction.pdf.max-main-memory-bytes:16777216}")
+    private long pdfMaxMainMemoryBytes;
+
+    //PDFs with at least this many pages are split across the page workers
+    @Value("${extraction.pdf.parallel.page-threshold:100}")
+    private int parallelPageThreshold;
+
+    //Worker threads shared by all parallel PDF extractions, 0 means one per core
+    @Value("${extraction.pdf.parallel.threads:0}")
+    private int parallelThreads;
+
+    //Smallest page range given to one worker, loading a document handle isn't free
+    @Value("${extraction.pdf.parallel.min-pages-per-worker:25}")
+    private int minPagesPerWorker;
+
+    private ExecutorService pageExecutor;
+
+    @PostConstruct
+    public void startPageExecutor() {
+        if (parallelThreads <= 0) {
+            parallelThreads = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        pageExecutor = Executors.newFixedThreadPool(parallelThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-pages-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stopPageExecutor() {
+        pageExecutor.shutdownNow();
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/pdf";
+    }
+
+    @Override
+    public boolean matches(byte[] header) {
+        for (int start = 0; start + SIGNATURE.length <= header.length; start++) {
+            int i = 0;
+            while (i < SIGNATURE.length && header[start + i] == SIGNATURE[i]) {
+                i++;
+            }
+            if (i == SIGNATURE.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void writeText(DocumentSource source, Writer out) throws IOException {
+        //Load PDF using Loader class, the document closes the source when it is closed
+        //Buffers over the memory limit go to a scratch file instead of the heap
+        //Loading only parses the cross-reference table, pages are read when the text is stripped
+        try (PDDocument document = Loader.loadPDF(source.openRandomAccess(), scratchMemory())) {
+            int pageCount = document.getNumberOfPages();
+            int workers = Math.min(parallelThreads, pageCount / Math.max(1, minPagesPerWorker));
+            boolean parallel = pageCount >= parallelPageThreshold && workers >= 2;
+
+            //Every parallel worker loads its own copy of the document
+            long cost = extractionScheduler.estimateCost(source.size() * (parallel ? workers : 1), mimeType(), pageCount);
+            try (ExtractionScheduler.Permit permit = extractionScheduler.admitOrThrow(cost, source.name())) {
+                //Small documents aren't worth the extra document handles
+                if (!parallel) {
+                    writePages(document, 1, pageCount, out);
+                    return;
+                }
+                writePagesInParallel(source, document, pageCount, workers, out);
+            }
+        }
+    }
+
+    private StreamCacheCreateFunction scratchMemory() {
+        return MemoryUsageSetting.setupMixed(pdfMaxMainMemoryBytes).streamCache;
+    }
+
+    //Split the pages into one contiguous range per worker and write the text out in page order
+    //The first range is handled on the calling thread with the document that is already loaded
+    //PDFBox isn't thread-safe, so every other range gets its own document handle
+    //Each range stops at extraction.max-chars on its own, the limit is applied to the whole text while the ranges
+    //are joined in page order, so a cut document always keeps exactly its first max-chars characters
+    private void writePagesInParallel(DocumentSource source, PDDocument document, int pageCount, int workers, Writer out) throws IOException {
+        int pagesPerWorker = (pageCount + workers - 1) / workers;
+
+        List<Future<RangeText>> ranges = new ArrayList<>();
+        for (int startPage = 1 + pagesPerWorker; startPage <= pageCount; startPage += pagesPerWorker) {
+            int firstPage = startPage;
+            int lastPage = Math.min(pageCount, startPage + pagesPerWorker - 1);
+            ranges.add(pageExecutor.submit(() -> {
+                try (PDDocument workerDocument = Loader.loadPDF(source.openRandomAccess(), scratchMemory())) {
+                    StringWriter rangeText = new StringWriter();
+                    try {
+                        writePages(workerDocument, firstPage, lastPage, new BoundedWriter(rangeText, maxChars));
+                    } catch (BoundedWriter.LimitReachedException e) {
+                        //This range alone fills the limit, the rest of it would be dropped anyway
+                        return new RangeText(rangeText.toString(), true);
+                    }
+                    return new RangeText(rangeText.toString(), false);
+                }
+            }));
+        }
+
+        try {
+            //Throws LimitReachedException as soon as the text so far goes over the limit
+            BoundedWriter documentText = new BoundedWriter(out, maxChars);
+            writePages(document, 1, pagesPerWorker, documentText);
+            for (Future<RangeText> range : ranges) {
+                RangeText text = range.get();
+                documentText.write(text.text());
+                //The later ranges can't follow a cut range
+                if (text.cut()) {
+                    throw new BoundedWriter.LimitReachedException(maxChars);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PDF extraction was interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            //Don't leave workers running on a document we gave up on or already have enough text from
+            ranges.forEach(range -> range.cancel(true));
+        }
+    }
+
+    //Text of one page range, cut is true when the range reached the limit part way
+    private record RangeText(String text, boolean cut) {
+    }
+
+    private void writePages(PDDocument document, int startPage, int endPage, Writer out) throws IOException {
+        //Create a text stripper (similar to extractor for doc/docx)
+        //Checks for cancellation before every content stream operator, a pathological page can run
+        //for minutes without producing any text for the writer to refuse
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("PDF extraction was cancelled");
+                }
+                super.processOperator(operator, operands);
+            }
+        };
+
+        //Strip text from the page range, page by page into the writer
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        stripper.writeText(document, out);
+    }
+}
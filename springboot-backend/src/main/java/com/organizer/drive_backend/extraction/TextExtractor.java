@@ -0,0 +1,30 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.IOException;
+import java.io.Writer;
+
+//Pulls the text out of one document format
+//Implementations are Spring beans, the registry picks one by looking at the first bytes of the file
+public interface TextExtractor {
+
+    //MIME type of the format, used as the registry key
+    String mimeType();
+
+    //Whether the document starts with this format's signature
+    boolean matches(byte[] header);
+
+    //Write the document text to out, stopping with BoundedWriter.LimitReachedException when out (or a limit of the extractor's own) is full
+    void writeText(DocumentSource source, Writer out) throws IOException;
+
+    static boolean startsWith(byte[] header, byte[] signature) {
+        if (header.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
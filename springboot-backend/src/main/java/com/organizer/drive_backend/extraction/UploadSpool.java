@@ -0,0 +1,127 @@
+package com.organizer.drive_backend.extraction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+//Holds an uploaded document while it is being processed
+//Small uploads stay in memory, once the threshold is crossed everything is moved to one temp file
+//so a document is never kept both in memory and on disk
+public class UploadSpool extends OutputStream {
+    private final long memoryThreshold;
+    private final String tempFileSuffix;
+
+    private MemoryBuffer memory = new MemoryBuffer();
+    private File file;
+    private OutputStream fileOutput;
+    private long size;
+
+    //Hashed as the bytes arrive so duplicates are known without reading the upload again
+    private final MessageDigest digest = ContentHash.newDigest();
+    private String contentHash;
+
+    public UploadSpool(long memoryThreshold, String tempFileSuffix) {
+        this.memoryThreshold = memoryThreshold;
+        this.tempFileSuffix = tempFileSuffix;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (memory != null && size + length > memoryThreshold) {
+            spillToFile();
+        }
+
+        if (memory != null) {
+            memory.write(buffer, offset, length);
+        } else {
+            fileOutput.write(buffer, offset, length);
+        }
+        size += length;
+        digest.update(buffer, offset, length);
+    }
+
+    //Move what we buffered so far to a temp file and keep writing there
+    private void spillToFile() throws IOException {
+        file = File.createTempFile("upload_", tempFileSuffix);
+        fileOutput = new FileOutputStream(file);
+        memory.writeTo(fileOutput);
+        memory = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.close();
+        }
+    }
+
+    public boolean isInMemory() {
+        return memory != null;
+    }
+
+    //Buffered bytes without copying them, only valid while the upload is still in memory
+    public ByteBuffer asByteBuffer() {
+        if (memory == null) {
+            throw new IllegalStateException("Upload was spooled to disk");
+        }
+        return memory.asByteBuffer();
+    }
+
+    public InputStream openInputStream() throws IOException {
+        if (memory == null) {
+            return new FileInputStream(file);
+        }
+        return memory.openInputStream();
+    }
+
+    //Spool file, only valid once the upload has been moved to disk
+    public File getFile() {
+        if (file == null) {
+            throw new IllegalStateException("Upload is held in memory");
+        }
+        return file;
+    }
+
+    //SHA-256 of everything written, only complete once the upload has been fully received
+    public String getContentHash() {
+        if (contentHash == null) {
+            contentHash = ContentHash.toHex(digest);
+        }
+        return contentHash;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    //Drop the buffered content and remove the temp file if there is one
+    public void discard() {
+        memory = null;
+        if (file != null && file.exists() && !file.delete()) {
+            System.err.println("Failed to delete spool file: " + file.getAbsolutePath());
+        }
+    }
+
+    //ByteArrayOutputStream that lets readers see its buffer instead of getting a copy
+    private static class MemoryBuffer extends ByteArrayOutputStream {
+        private ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count).slice().asReadOnlyBuffer();
+        }
+
+        private InputStream openInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+//Batch ingestion run over a Drive folder
+//Stores the page being worked on so a cancelled or interrupted run can pick up where it stopped
+//The unique running_folder_id makes claiming a folder atomic across nodes sharing the table
+@Data
+@Entity
+@Table(name = "batch_jobs", indexes = {
+        @Index(name = "idx_batch_jobs_folder_status", columnList = "folder_id, status"),
+        @Index(name = "ux_batch_jobs_running_folder", columnList = "running_folder_id", unique = true)
+})
+public class BatchJob {
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED, INTERRUPTED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String folderId;
+
+    //Same as folderId while the job is running, null otherwise (MySQL allows any number of nulls in a unique index)
+    private String runningFolderId;
+
+    //Node running the job and the last time it reported the job alive
+    private String ownerId;
+    private LocalDateTime heartbeatAt;
+
+    private boolean incremental;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    //Only files modified since this time are listed (incremental runs)
+    private String sinceModifiedTime;
+
+    //Page currently being processed, null means the first page
+    @Column(length = 1000)
+    private String pageToken;
+
+    //Newest Drive modifiedTime seen so far, becomes the sync watermark once the job completes
+    private String newestModifiedTime;
+
+    //Oldest Drive modifiedTime of a file that failed or timed out, the watermark stops there so the next
+    //incremental run lists the file again
+    private String oldestFailedModifiedTime;
+
+    //Files matching the listing query when the job started
+    private Integer totalFiles;
+
+    private int filesDone;
+    private int filesFailed;
+    private int filesSkipped;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+
+    //Files handled before the current run started, used to compute the rate of this run
+    private int processedAtStart;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    public int getProcessed() {
+        return filesDone + filesFailed + filesSkipped;
+    }
+}
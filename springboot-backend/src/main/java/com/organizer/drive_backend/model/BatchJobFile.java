@@ -0,0 +1,45 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+//Checkpoint for one file handled by a batch job, so a resumed job skips it
+@Data
+@Entity
+@Table(name = "batch_job_files", indexes = {
+        @Index(name = "ux_batch_job_files_job_file", columnList = "job_id, file_id", unique = true)
+})
+public class BatchJobFile {
+    public enum Outcome { SUCCESS, FAILED, SKIPPED }
+
+    //Written in the same batches as the extractions, so it needs a batchable ID as well
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "batch_job_files_seq")
+    @SequenceGenerator(name = "batch_job_files_seq", sequenceName = "batch_job_files_seq", allocationSize = 50)
+    private Long id;
+
+    private Long jobId;
+
+    private String fileId;
+
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    private Outcome outcome;
+
+    @Column(length = 1000)
+    private String message;
+
+    private LocalDateTime processedAt;
+}
@@ -1,21 +1,46 @@
 package com.organizer.drive_backend.model;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 @Entity
-@Table(name = "document_extractions")
+@Table(name = "document_extractions", indexes = {
+        //One row per Drive file, also backs the batched fileId IN (...) lookups
+        @Index(name = "ux_document_extractions_file_id", columnList = "file_id", unique = true),
+        //Finds an earlier extraction of the same bytes so it can be reused
+        @Index(name = "idx_document_extractions_content_hash", columnList = "content_hash")
+})
 public class DocumentExtraction {
+    //Status of documents whose extraction ran over its time budget and was abandoned
+    public static final String STATUS_TIMED_OUT = "Timed out";
+
+    //Sequence (a table on MySQL) instead of IDENTITY so Hibernate can batch inserts
+    //IDs are handed out in blocks of 50, matching hibernate.jdbc.batch_size
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_extractions_seq")
+    @SequenceGenerator(name = "document_extractions_seq", sequenceName = "document_extractions_seq", allocationSize = 50)
     private Long id;
 
     private String fileName;
@@ -24,8 +49,15 @@ public class DocumentExtraction {
 
     private String mimeType;
 
-    @Column(length = 10485760)
-    private String extractedText;
+    //Compressed text in its own table, only loaded through DocumentTextRepository or when accessed
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "text_id")
+    private DocumentText text;
+
+    //True when the document had more text than extraction.max-chars and the rest was dropped
+    private Boolean textTruncated;
 
     private LocalDateTime extractionTime;
 
@@ -34,6 +66,45 @@ public class DocumentExtraction {
     @Column(length = 1000)  //Store comma-separated tags
     private String tags;
 
+    //The same tags one row each in document_tags, kept in step by setTags
+    //Tag queries join on this table, the (tag, document_id) index finds a tag's documents without scanning
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "document_tags", joinColumns = @JoinColumn(name = "document_id"),
+            indexes = @Index(name = "idx_document_tags_tag", columnList = "tag, document_id"))
+    @Column(name = "tag", nullable = false, length = 100)
+    private Set<String> tagSet = new LinkedHashSet<>();
+
     @Column(columnDefinition = "TEXT")  //Store detailed classification as JSON
     private String tagClassification;
+
+    //Drive checksum and modified time of the content that was extracted
+    //Used by the batch sync to only re-process files that changed
+    private String md5Checksum;
+
+    private LocalDateTime driveModifiedTime;
+
+    //SHA-256 of the document bytes, hex encoded
+    @Column(length = 64)
+    private String contentHash;
+
+    public void setTags(String tags) {
+        this.tags = tags;
+        this.tagSet = splitTags(tags);
+    }
+
+    //Individual tags of a comma-separated tag string, trimmed, without blanks or repeats
+    public static Set<String> splitTags(String tags) {
+        Set<String> tagSet = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags.split(",")) {
+                if (!tag.isBlank()) {
+                    tagSet.add(tag.trim());
+                }
+            }
+        }
+        return tagSet;
+    }
 }
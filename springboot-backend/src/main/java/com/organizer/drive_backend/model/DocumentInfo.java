@@ -0,0 +1,40 @@
+package com.organizer.drive_backend.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+//Document as returned by the tag and search endpoints
+@Data
+public class DocumentInfo {
+    private Long id;
+    private String fileName;
+    private String fileId;
+    private String mimeType;
+    private String extractionTime;
+    private List<String> tags;
+    private String documentType;
+    private String url;
+
+    //BM25 relevance when the document came from a keyword search, left out of the JSON otherwise
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double score;
+
+    public static DocumentInfo from(DocumentSummary summary) {
+        DocumentInfo info = new DocumentInfo();
+        info.setId(summary.getId());
+        info.setFileName(summary.getFileName());
+        info.setFileId(summary.getFileId());
+        info.setMimeType(summary.getMimeType());
+        if (summary.getExtractionTime() != null) {
+            info.setExtractionTime(summary.getExtractionTime().toString());
+        }
+        info.setTags(summary.getTags() != null && !summary.getTags().isEmpty()
+                ? List.of(summary.getTags().split(",")) : List.of());
+        info.setDocumentType(summary.getDocumentType());
+        info.setUrl("https://drive.google.com/file/d/" + summary.getFileId() + "/view");
+        return info;
+    }
+}
@@ -0,0 +1,21 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+//Repository projection with the columns the tag and search endpoints need, instead of whole DocumentExtraction entities
+//documentType is worked out from the tags in SQL, the same way the classifier decides it
+public interface DocumentSummary {
+    Long getId();
+
+    String getFileName();
+
+    String getFileId();
+
+    String getMimeType();
+
+    String getTags();
+
+    String getDocumentType();
+
+    LocalDateTime getExtractionTime();
+}
@@ -0,0 +1,123 @@
+package com.organizer.drive_backend.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.ToString;
+
+//Extracted text of a document, kept out of document_extractions so listing and tag queries only read small rows
+//Stored deflated in the same layout as MySQL's COMPRESS(): 4-byte little-endian length of the
+//UTF-8 text followed by a zlib stream, so UNCOMPRESS(content) works in SQL as well
+@Data
+@Entity
+@Table(name = "document_texts")
+public class DocumentText {
+    //Written in the same batches as the extractions
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_texts_seq")
+    @SequenceGenerator(name = "document_texts_seq", sequenceName = "document_texts_seq", allocationSize = 50)
+    private Long id;
+
+    @ToString.Exclude
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] content;
+
+    //Length of the text in characters, without having to decompress it
+    private Integer charLength;
+
+    //Compressed copy of the text, null stays null
+    public static DocumentText of(String text) {
+        if (text == null) {
+            return null;
+        }
+        DocumentText documentText = new DocumentText();
+        documentText.setContent(compress(text));
+        documentText.setCharLength(text.length());
+        return documentText;
+    }
+
+    //New row with the same compressed bytes, used when the text of identical content is reused
+    public DocumentText copy() {
+        DocumentText documentText = new DocumentText();
+        documentText.setContent(content);
+        documentText.setCharLength(charLength);
+        return documentText;
+    }
+
+    public String decompress() {
+        return content == null ? null : decompress(content);
+    }
+
+    static byte[] compress(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length == 0) {
+            //COMPRESS('') is an empty string as well
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 4 + 16);
+        out.write(utf8.length);
+        out.write(utf8.length >>> 8);
+        out.write(utf8.length >>> 16);
+        out.write(utf8.length >>> 24);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    static String decompress(byte[] content) {
+        if (content.length == 0) {
+            return "";
+        }
+        if (content.length < 4) {
+            throw new IllegalStateException("Compressed text is missing its length header");
+        }
+        //MySQL only uses the low 30 bits for the length
+        int length = ((content[0] & 0xff) | (content[1] & 0xff) << 8 | (content[2] & 0xff) << 16
+                | (content[3] & 0xff) << 24) & 0x3fffffff;
+
+        byte[] utf8 = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(content, 4, content.length - 4);
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int inflated = inflater.inflate(utf8, read, length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != length) {
+                throw new IllegalStateException("Compressed text is " + read + " bytes, expected " + length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed text is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
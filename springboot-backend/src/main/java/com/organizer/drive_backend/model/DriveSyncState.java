@@ -0,0 +1,22 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "drive_sync_state")
+public class DriveSyncState {
+    //Drive folder this watermark belongs to
+    @Id
+    private String folderId;
+
+    //Highest Drive modifiedTime (RFC 3339) seen by the last completed sync
+    private String lastModifiedTime;
+
+    private LocalDateTime lastSyncTime;
+}
@@ -0,0 +1,66 @@
+package com.organizer.drive_backend.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.Data;
+
+//Position after the last item of a page, handed to clients as an opaque string
+//Database listings are ordered by document ID and resume after afterId
+//Keyword searches are ordered by score (highest first) then file ID and resume after afterScore/afterFileId
+@Data
+public class PageCursor {
+    private Long afterId;
+    private Float afterScore;
+    private String afterFileId;
+
+    public static PageCursor afterId(long id) {
+        PageCursor cursor = new PageCursor();
+        cursor.setAfterId(id);
+        return cursor;
+    }
+
+    public static PageCursor afterHit(float score, String fileId) {
+        PageCursor cursor = new PageCursor();
+        cursor.setAfterScore(score);
+        cursor.setAfterFileId(fileId);
+        return cursor;
+    }
+
+    //Where a listing resumes, 0 starts at the first document
+    public long afterIdOrStart() {
+        return afterId != null ? afterId : 0L;
+    }
+
+    public boolean isRanked() {
+        return afterScore != null && afterFileId != null;
+    }
+
+    public String encode() {
+        String value = isRanked()
+                ? "s:" + Float.floatToIntBits(afterScore) + ":" + afterFileId
+                : "i:" + afterIdOrStart();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Null or empty gives a cursor at the start, anything that isn't a cursor from encode() is rejected
+    public static PageCursor decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new PageCursor();
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            if (value.startsWith("i:")) {
+                return afterId(Long.parseLong(value.substring(2)));
+            }
+            if (value.startsWith("s:")) {
+                int separator = value.indexOf(':', 2);
+                float score = Float.intBitsToFloat(Integer.parseInt(value.substring(2, separator)));
+                return afterHit(score, value.substring(separator + 1));
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            //Falls through to the error below
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+}
@@ -0,0 +1,17 @@
+package com.organizer.drive_backend.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//One page of a list or search endpoint
+//nextCursor is passed back as the cursor parameter to get the following page, it is null on the last page
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PagedResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,35 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+
+//Upload that is processed in the background, clients poll or subscribe to it by jobId
+@Data
+public class UploadJob {
+    public enum Status { QUEUED, PROCESSING, COMPLETED, FAILED }
+
+    private String jobId;
+    private String fileName;
+    private Status status;
+
+    //Last progress step, e.g. "Extracting text"
+    private String progress;
+
+    //Final upload result once the job is COMPLETED or FAILED
+    private Response result;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    //Owner of the job, only they can see it
+    @JsonIgnore
+    private String firebaseUID;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,22 @@
+package com.organizer.drive_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "user_folders")
+public class UserFolder {
+    //Firebase UID of the folder owner
+    @Id
+    private String firebaseUid;
+
+    //Drive ID of the user_<uid> folder
+    private String folderId;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,25 @@
+package com.organizer.drive_backend.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.organizer.drive_backend.model.BatchJobFile;
+
+@Repository
+public interface BatchJobFileRepository extends JpaRepository<BatchJobFile, Long> {
+    //Files of one Drive page that the job already handled
+    @Query("SELECT f.fileId FROM BatchJobFile f WHERE f.jobId = :jobId AND f.fileId IN :fileIds")
+    Set<String> findCheckpointedFileIds(@Param("jobId") Long jobId, @Param("fileIds") Collection<String> fileIds);
+
+    //Number of checkpointed files per outcome, the job's counters rebuilt from its checkpoints
+    @Query("SELECT f.outcome, COUNT(f) FROM BatchJobFile f WHERE f.jobId = :jobId GROUP BY f.outcome")
+    List<Object[]> countOutcomes(@Param("jobId") Long jobId);
+
+    List<BatchJobFile> findByJobIdAndOutcome(Long jobId, BatchJobFile.Outcome outcome);
+}
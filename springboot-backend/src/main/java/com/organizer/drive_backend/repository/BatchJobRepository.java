@@ -0,0 +1,40 @@
+package com.organizer.drive_backend.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.organizer.drive_backend.model.BatchJob;
+
+@Repository
+public interface BatchJobRepository extends JpaRepository<BatchJob, Long> {
+    //Claim a stopped job for a node, returns 0 when it is completed or already running (possibly on another node)
+    //Fails on the unique running_folder_id when another job is running on the same folder
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE BatchJob j SET j.status = :running, j.runningFolderId = j.folderId, j.ownerId = :ownerId, "
+            + "j.heartbeatAt = :now, j.updatedAt = :now WHERE j.id = :id AND j.status <> :running AND j.status <> :completed")
+    int claimForResume(@Param("id") Long id, @Param("ownerId") String ownerId, @Param("now") LocalDateTime now,
+                       @Param("running") BatchJob.Status running, @Param("completed") BatchJob.Status completed);
+
+    //Returns 0 when the job no longer runs on this node, i.e. it was taken over after a missed heartbeat
+    @Modifying
+    @Transactional
+    @Query("UPDATE BatchJob j SET j.heartbeatAt = :now WHERE j.id = :id AND j.ownerId = :ownerId AND j.status = :running")
+    int heartbeat(@Param("id") Long id, @Param("ownerId") String ownerId, @Param("now") LocalDateTime now,
+                  @Param("running") BatchJob.Status running);
+
+    //Mark running jobs of the given node (null for none) and jobs whose heartbeat is older than staleBefore as interrupted
+    @Modifying
+    @Transactional
+    @Query("UPDATE BatchJob j SET j.status = :interrupted, j.runningFolderId = NULL, j.updatedAt = :now "
+            + "WHERE j.status = :running AND (j.ownerId = :ownerId OR j.heartbeatAt IS NULL OR j.heartbeatAt < :staleBefore)")
+    int markInterrupted(@Param("ownerId") String ownerId, @Param("staleBefore") LocalDateTime staleBefore,
+                        @Param("now") LocalDateTime now, @Param("running") BatchJob.Status running,
+                        @Param("interrupted") BatchJob.Status interrupted);
+}
@@ -1,63 +1,188 @@
 package com.organizer.drive_backend.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentSummary;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<DocumentExtraction, Long> {
+    //Max number of IDs sent in one IN (...) list
+    int FILE_ID_BATCH_SIZE = 500;
+
     //Find document by Google Drive file ID
     DocumentExtraction findByFileId(String fileId);
 
-    //Find documents by tag (using LIKE with comma separation)
-    @Query("SELECT d FROM DocumentExtraction d WHERE d.tags LIKE CONCAT('%', :tag, '%')")
-    List<DocumentExtraction> findByTag(@Param("tag") String tag);
-
-    //Find documents by multiple tags (documents must have ALL specified tags)
-    @Query(value = "SELECT * FROM document_extractions d WHERE " +
-            "(:tag1 IS NULL OR d.tags LIKE CONCAT('%', :tag1, '%')) AND " +
-            "(:tag2 IS NULL OR d.tags LIKE CONCAT('%', :tag2, '%')) AND " +
-            "(:tag3 IS NULL OR d.tags LIKE CONCAT('%', :tag3, '%'))",
-            nativeQuery = true)
-    List<DocumentExtraction> findByMultipleTags(
-            @Param("tag1") String tag1,
-            @Param("tag2") String tag2,
-            @Param("tag3") String tag3);
-
-    //Advanced search with both tag and content
-    @Query("SELECT d FROM DocumentExtraction d WHERE " +
-            "(d.tags LIKE CONCAT('%', :tag, '%')) AND " +
-            "(d.extractedText LIKE CONCAT('%', :keyword, '%'))")
-    List<DocumentExtraction> findByTagAndKeyword(
-            @Param("tag") String tag,
-            @Param("keyword") String keyword);
-
-    //Find all academic documents
-    @Query("SELECT d FROM DocumentExtraction d WHERE " +
-            "d.tags LIKE CONCAT('%', 'math-science', '%') OR " +
-            "d.tags LIKE CONCAT('%', 'humanities', '%') OR " +
-            "d.tags LIKE CONCAT('%', 'computer', '%') OR " +
-            "d.tags LIKE CONCAT('%', 'business-studies', '%') OR " +
-            "d.tags LIKE CONCAT('%', 'arts', '%') OR " +
-            "d.tags LIKE CONCAT('%', 'assignment', '%')")
-    List<DocumentExtraction> findAcademicDocuments();
-
-    //Find documents by professional category
-    @Query("SELECT d FROM DocumentExtraction d WHERE " +
-            "d.tags NOT LIKE CONCAT('%', 'math-science', '%') AND " +
-            "d.tags NOT LIKE CONCAT('%', 'humanities', '%') AND " +
-            "d.tags NOT LIKE CONCAT('%', 'computer', '%') AND " +
-            "d.tags NOT LIKE CONCAT('%', 'business-studies', '%') AND " +
-            "d.tags NOT LIKE CONCAT('%', 'arts', '%') AND " +
-            "d.tags NOT LIKE CONCAT('%', 'assignment', '%')")
-    List<DocumentExtraction> findProfessionalDocuments();
-
-    //Find documents by academic subject area
-    @Query("SELECT d FROM DocumentExtraction d WHERE d.tags LIKE CONCAT('%', :subject, '%')")
-    List<DocumentExtraction> findByAcademicSubject(@Param("subject") String subject);
-}
\ No newline at end of file
+    //Find documents for many Google Drive file IDs in one query
+    List<DocumentExtraction> findByFileIdIn(Collection<String> fileIds);
+
+    //Look up a whole Drive listing with a few queries instead of one per file
+    //Returns fileId -> document, files without a record are left out
+    default Map<String, DocumentExtraction> findAllByFileIds(Collection<String> fileIds) {
+        Map<String, DocumentExtraction> documentsByFileId = new HashMap<>();
+        List<String> ids = new ArrayList<>(fileIds);
+
+        for (int start = 0; start < ids.size(); start += FILE_ID_BATCH_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + FILE_ID_BATCH_SIZE, ids.size()));
+            for (DocumentExtraction document : findByFileIdIn(chunk)) {
+                documentsByFileId.put(document.getFileId(), document);
+            }
+        }
+        return documentsByFileId;
+    }
+
+    //Newest successful, tagged extraction of the same content
+    DocumentExtraction findFirstByContentHashAndStatusAndTagsNotOrderByExtractionTimeDesc(String contentHash, String status, String tags);
+
+    //Earlier extraction whose text and tags can be copied instead of running PDFBox/POI and the classifier again
+    //Rows without tags are not reused, they may come from a time the classifier was unavailable
+    default DocumentExtraction findReusableExtraction(String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        return findFirstByContentHashAndStatusAndTagsNotOrderByExtractionTimeDesc(contentHash, "Success", "");
+    }
+
+    //Tags that make a document academic, everything else is professional
+    String ACADEMIC_TAGS = "('math-science', 'humanities', 'computer', 'business-studies', 'arts', 'assignment')";
+
+    //Tag conditions are exact matches on document_tags, MySQL runs the subqueries as semi-joins on idx_document_tags_tag
+    String ACADEMIC_TAGS_CONDITION = "d.id IN (SELECT dt.document_id FROM document_tags dt WHERE dt.tag IN " + ACADEMIC_TAGS + ")";
+
+    //Untagged documents are neither academic nor professional
+    String PROFESSIONAL_TAGS_CONDITION = "(d.tags IS NOT NULL AND " +
+            "d.id NOT IN (SELECT dt.document_id FROM document_tags dt WHERE dt.tag IN " + ACADEMIC_TAGS + "))";
+
+    String TAG_CONDITION = "d.id IN (SELECT dt.document_id FROM document_tags dt WHERE dt.tag = :tag)";
+
+    //Documents that have every tag in :tags, :tagCount must be the number of distinct tags
+    String ALL_TAGS_CONDITION = "d.id IN (SELECT dt.document_id FROM document_tags dt WHERE dt.tag IN (:tags) " +
+            "GROUP BY dt.document_id HAVING COUNT(*) = :tagCount)";
+
+    //Only the columns in DocumentSummary, the text and classification JSON are never read
+    String SUMMARY_SELECT = "SELECT d.id AS id, d.file_name AS fileName, d.file_id AS fileId, d.mime_type AS mimeType, " +
+            "d.tags AS tags, d.extraction_time AS extractionTime, " +
+            "CASE WHEN " + ACADEMIC_TAGS_CONDITION + " THEN 'academic' ELSE 'professional' END AS documentType " +
+            "FROM document_extractions d WHERE ";
+
+    //Optional keyword filter, MySQL decompresses the text (stored in COMPRESS() format) and matches it
+    //Pass the keyword through likePattern so % and _ are matched literally
+    String KEYWORD_CONDITION = "(:keyword IS NULL OR EXISTS (SELECT 1 FROM document_texts t WHERE t.id = d.text_id " +
+            "AND CONVERT(UNCOMPRESS(t.content) USING utf8mb4) LIKE CONCAT('%', :keyword, '%')))";
+
+    //Escape LIKE wildcards in a user supplied keyword, null or empty means no keyword filter
+    static String likePattern(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return null;
+        }
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    //Keyset pagination: every listing is in ID order and a page starts after the last ID of the previous one
+    //Callers ask for one row more than the page size to know whether there is a next page
+    String PAGE = " AND d.id > :afterId ORDER BY d.id LIMIT :limit";
+
+    //Find documents with the given tag
+    @Query(value = SUMMARY_SELECT + TAG_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findSummariesByTag(@Param("tag") String tag, @Param("afterId") long afterId, @Param("limit") int limit);
+
+    @Query(value = SUMMARY_SELECT + ALL_TAGS_CONDITION + " AND " + KEYWORD_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findSummariesByTags(
+            @Param("tags") Collection<String> tags,
+            @Param("tagCount") long tagCount,
+            @Param("keyword") String keyword,
+            @Param("afterId") long afterId,
+            @Param("limit") int limit);
+
+    //Find documents that have ALL the given tags, optionally containing a keyword
+    default List<DocumentSummary> findSummariesWithAllTags(Collection<String> tags, String keyword, long afterId, int limit) {
+        Set<String> distinctTags = new HashSet<>(tags);
+        return findSummariesByTags(distinctTags, distinctTags.size(), keyword, afterId, limit);
+    }
+
+    //Documents whose text contains the keyword, or all documents when it is null
+    @Query(value = SUMMARY_SELECT + KEYWORD_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findSummariesByKeyword(@Param("keyword") String keyword, @Param("afterId") long afterId, @Param("limit") int limit);
+
+    //Find all academic documents, optionally containing a keyword
+    @Query(value = SUMMARY_SELECT + ACADEMIC_TAGS_CONDITION + " AND " + KEYWORD_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findAcademicSummaries(@Param("keyword") String keyword, @Param("afterId") long afterId, @Param("limit") int limit);
+
+    //Find documents by professional category, optionally containing a keyword
+    @Query(value = SUMMARY_SELECT + PROFESSIONAL_TAGS_CONDITION + " AND " + KEYWORD_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findProfessionalSummaries(@Param("keyword") String keyword, @Param("afterId") long afterId, @Param("limit") int limit);
+
+    //Find documents by academic subject area, optionally containing a keyword
+    @Query(value = SUMMARY_SELECT + TAG_CONDITION + " AND " + KEYWORD_CONDITION + PAGE, nativeQuery = true)
+    List<DocumentSummary> findSummariesByAcademicSubject(@Param("tag") String subject, @Param("keyword") String keyword,
+                                                         @Param("afterId") long afterId, @Param("limit") int limit);
+
+    //Number of distinct files with extracted text, what the search index should hold
+    @Query("SELECT COUNT(DISTINCT d.fileId) FROM DocumentExtraction d WHERE d.text IS NOT NULL")
+    long countFileIdsWithText();
+
+    @Query(value = SUMMARY_SELECT + "d.file_id IN (:fileIds)", nativeQuery = true)
+    List<DocumentSummary> findSummariesByFileIdIn(@Param("fileIds") Collection<String> fileIds);
+
+    //Summaries of the given files in the same order as the IDs, e.g. search results best match first
+    default List<DocumentSummary> findSummariesInOrder(List<String> fileIds) {
+        Map<String, List<DocumentSummary>> summariesByFileId = new HashMap<>();
+        for (int start = 0; start < fileIds.size(); start += FILE_ID_BATCH_SIZE) {
+            List<String> chunk = fileIds.subList(start, Math.min(start + FILE_ID_BATCH_SIZE, fileIds.size()));
+            for (DocumentSummary summary : findSummariesByFileIdIn(chunk)) {
+                summariesByFileId.computeIfAbsent(summary.getFileId(), id -> new ArrayList<>()).add(summary);
+            }
+        }
+
+        List<DocumentSummary> ordered = new ArrayList<>();
+        for (String fileId : fileIds) {
+            //Removed once added so a repeated ID doesn't list the same documents twice
+            List<DocumentSummary> summaries = summariesByFileId.remove(fileId);
+            if (summaries != null) {
+                ordered.addAll(summaries);
+            }
+        }
+        return ordered;
+    }
+
+    @Query(value = SUMMARY_SELECT + "d.id IN (:ids) AND " + KEYWORD_CONDITION + " ORDER BY d.id LIMIT :limit", nativeQuery = true)
+    List<DocumentSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids, @Param("keyword") String keyword, @Param("limit") int limit);
+
+    //Up to limit summaries from a set of documents, e.g. a tag index result, in ID order starting after afterId
+    //optionally only those containing a keyword
+    default List<DocumentSummary> findSummariesByIds(Roaring64NavigableMap ids, String keyword, long afterId, int limit) {
+        List<DocumentSummary> summaries = new ArrayList<>();
+        long cardinality = ids.getLongCardinality();
+        //Position of the first ID after afterId
+        long next = ids.rankLong(afterId);
+        List<Long> chunk = new ArrayList<>(FILE_ID_BATCH_SIZE);
+        while (next < cardinality && summaries.size() < limit) {
+            chunk.add(ids.select(next++));
+            if (chunk.size() == FILE_ID_BATCH_SIZE || next == cardinality) {
+                summaries.addAll(findSummariesByIdIn(chunk, keyword, limit - summaries.size()));
+                chunk.clear();
+            }
+        }
+        return summaries;
+    }
+
+    //ID and tags column of documents after the given ID, for loading the tag index a page at a time
+    @Query("SELECT d.id, d.tags FROM DocumentExtraction d WHERE d.id > :afterId ORDER BY d.id")
+    List<Object[]> findIdsAndTagsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(value = "SELECT dt.document_id, dt.tag FROM document_tags dt WHERE dt.document_id IN (:ids)", nativeQuery = true)
+    List<Object[]> findTagRowsByDocumentIdIn(@Param("ids") Collection<Long> ids);
+}
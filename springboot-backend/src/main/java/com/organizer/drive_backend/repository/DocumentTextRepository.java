@@ -0,0 +1,28 @@
+package com.organizer.drive_backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.organizer.drive_backend.model.DocumentText;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+    //Text of one document, loaded on its own so callers don't need an open session for the lazy association
+    @Query("SELECT d.text FROM DocumentExtraction d WHERE d.id = :documentId")
+    DocumentText findByDocumentId(@Param("documentId") Long documentId);
+
+    //Decompressed text of a document, null if it has none
+    default String findTextByDocumentId(Long documentId) {
+        DocumentText text = findByDocumentId(documentId);
+        return text != null ? text.decompress() : null;
+    }
+
+    //Document id, file ID and compressed text of documents after the given id, for rebuilding the search index a page at a time
+    @Query("SELECT d.id, d.fileId, t FROM DocumentExtraction d JOIN d.text t WHERE d.id > :afterId ORDER BY d.id")
+    List<Object[]> findTextsAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
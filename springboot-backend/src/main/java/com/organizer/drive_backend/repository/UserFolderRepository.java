@@ -0,0 +1,10 @@
+package com.organizer.drive_backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.organizer.drive_backend.model.UserFolder;
+
+@Repository
+public interface UserFolderRepository extends JpaRepository<UserFolder, String> {
+}
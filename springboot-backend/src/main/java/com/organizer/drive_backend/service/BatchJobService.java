@@ -0,0 +1,328 @@
+package com.organizer.drive_backend.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.organizer.drive_backend.model.BatchJob;
+import com.organizer.drive_backend.model.BatchJobFile;
+import com.organizer.drive_backend.repository.BatchJobFileRepository;
+import com.organizer.drive_backend.repository.BatchJobRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+//Starts, cancels and resumes batch ingestion jobs
+//Only one job runs per Drive folder across all nodes, progress is saved after every page and every file
+//Nodes mark the jobs they run with a heartbeat, a job whose node stopped reporting can be resumed anywhere
+@Service
+public class BatchJobService {
+    @Autowired
+    private BatchProcessService batchProcessService;
+
+    @Autowired
+    private BatchJobRepository batchJobRepository;
+
+    @Autowired
+    private BatchJobFileRepository batchJobFileRepository;
+
+    //Identifies this node in batch_jobs, must be different on every node sharing the database
+    //Defaults to the host name, so a restarted node recognises the jobs it was running
+    @Value("${batch.jobs.instance-id:}")
+    private String instanceId;
+
+    //How often running jobs are reported alive, and how long a job can go unreported before it counts as orphaned
+    @Value("${batch.jobs.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    @Value("${batch.jobs.stale-after-ms:120000}")
+    private long staleAfterMs;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService heartbeat;
+
+    //Folder -> job currently running on this node
+    private final Map<String, BatchJob> runningByFolder = new ConcurrentHashMap<>();
+
+    //Jobs asked to stop, checked by the pipeline before every file
+    private final Set<Long> cancelRequested = ConcurrentHashMap.newKeySet();
+
+    //Jobs another node took over after this one missed heartbeats, their state is no longer ours to save
+    private final Set<Long> lostJobs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void startExecutor() {
+        if (instanceId == null || instanceId.isBlank()) {
+            try {
+                instanceId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                instanceId = UUID.randomUUID().toString();
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> new Thread(runnable, "batch-job-" + threadNumber.incrementAndGet()));
+
+        //Jobs this node was running were cut off by a restart, jobs of other nodes only once their heartbeat is stale
+        int orphaned = batchJobRepository.markInterrupted(instanceId, staleBefore(), LocalDateTime.now(),
+                BatchJob.Status.RUNNING, BatchJob.Status.INTERRUPTED);
+        if (orphaned > 0) {
+            System.out.println(orphaned + " batch jobs were interrupted by a restart and can be resumed");
+        }
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-job-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        //Let running jobs stop after the files already in the pipeline, they are resumable
+        runningByFolder.values().forEach(job -> cancelRequested.add(job.getId()));
+        executor.shutdown();
+        heartbeat.shutdownNow();
+    }
+
+    //Report this node's jobs alive, then release jobs of nodes that stopped reporting
+    private void sendHeartbeats() {
+        try {
+            for (BatchJob job : runningByFolder.values()) {
+                synchronized (job) {
+                    job.setHeartbeatAt(LocalDateTime.now());
+                    if (batchJobRepository.heartbeat(job.getId(), instanceId, job.getHeartbeatAt(), BatchJob.Status.RUNNING) == 0
+                            && lostJobs.add(job.getId())) {
+                        System.err.println("Batch job " + job.getId() + " was taken over by another node, stopping it here");
+                        cancelRequested.add(job.getId());
+                    }
+                }
+            }
+
+            int orphaned = batchJobRepository.markInterrupted(null, staleBefore(), LocalDateTime.now(),
+                    BatchJob.Status.RUNNING, BatchJob.Status.INTERRUPTED);
+            if (orphaned > 0) {
+                System.out.println(orphaned + " batch jobs stopped sending heartbeats and were marked as interrupted");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error sending batch job heartbeats: " + e.getMessage());
+        }
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000);
+    }
+
+    //Start a new job over the configured folder
+    //Throws IllegalStateException if a job is already running on it
+    public BatchJob startJob(boolean incremental) {
+        BatchJob job = new BatchJob();
+        job.setFolderId(batchProcessService.getFolderId());
+        job.setIncremental(incremental);
+        if (incremental) {
+            job.setSinceModifiedTime(batchProcessService.getSyncWatermark());
+        }
+        job.setCreatedAt(LocalDateTime.now());
+        job.setStatus(BatchJob.Status.RUNNING);
+        job.setStartedAt(job.getCreatedAt());
+        job.setUpdatedAt(job.getCreatedAt());
+        job.setOwnerId(instanceId);
+        job.setHeartbeatAt(job.getCreatedAt());
+
+        //The insert is the claim, the unique running_folder_id rejects it if the folder already has a running job
+        job.setRunningFolderId(job.getFolderId());
+        try {
+            job = batchJobRepository.saveAndFlush(job);
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyRunning(job.getFolderId());
+        }
+
+        runningByFolder.put(job.getFolderId(), job);
+        submit(job);
+        return job;
+    }
+
+    //Continue a cancelled, failed or interrupted job from its last checkpoint
+    public BatchJob resumeJob(Long jobId) {
+        BatchJob job = batchJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Batch job not found: " + jobId));
+
+        if (job.getStatus() == BatchJob.Status.RUNNING || job.getStatus() == BatchJob.Status.COMPLETED) {
+            throw new IllegalStateException("Batch job " + jobId + " is " + job.getStatus() + " and cannot be resumed");
+        }
+
+        //Conditional update, so two nodes resuming the same job can't both win
+        int claimed;
+        try {
+            claimed = batchJobRepository.claimForResume(jobId, instanceId, LocalDateTime.now(),
+                    BatchJob.Status.RUNNING, BatchJob.Status.COMPLETED);
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyRunning(job.getFolderId());
+        }
+        if (claimed == 0) {
+            throw new IllegalStateException("Batch job " + jobId + " is already running and cannot be resumed");
+        }
+        job = batchJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Batch job not found: " + jobId));
+
+        //Counters are only saved per page, the checkpoints are written with every file
+        job.setFilesDone(0);
+        job.setFilesFailed(0);
+        job.setFilesSkipped(0);
+        for (Object[] row : batchJobFileRepository.countOutcomes(jobId)) {
+            int count = ((Number) row[1]).intValue();
+            switch ((BatchJobFile.Outcome) row[0]) {
+                case SUCCESS -> job.setFilesDone(count);
+                case FAILED -> job.setFilesFailed(count);
+                case SKIPPED -> job.setFilesSkipped(count);
+            }
+        }
+
+        job.setErrorMessage(null);
+        job.setFinishedAt(null);
+        job.setStartedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getStartedAt());
+        job.setProcessedAtStart(job.getProcessed());
+        job = batchJobRepository.save(job);
+
+        runningByFolder.put(job.getFolderId(), job);
+        submit(job);
+        return job;
+    }
+
+    //Ask a running job to stop, files already in the pipeline are still saved
+    public BatchJob cancelJob(Long jobId) {
+        BatchJob job = getJob(jobId);
+        if (job.getStatus() != BatchJob.Status.RUNNING) {
+            throw new IllegalStateException("Batch job " + jobId + " is not running");
+        }
+        cancelRequested.add(jobId);
+        return job;
+    }
+
+    //Live copy while the job runs on this node, the stored one otherwise
+    public BatchJob getJob(Long jobId) {
+        for (BatchJob running : runningByFolder.values()) {
+            if (running.getId().equals(jobId)) {
+                return running;
+            }
+        }
+        return batchJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Batch job not found: " + jobId));
+    }
+
+    //Counts, rate and estimated time left for a job
+    public Map<String, Object> getProgress(Long jobId) {
+        BatchJob job = getJob(jobId);
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        synchronized (job) {
+            progress.put("jobId", job.getId());
+            progress.put("status", job.getStatus());
+            progress.put("incremental", job.isIncremental());
+            progress.put("cancelRequested", cancelRequested.contains(job.getId()));
+            progress.put("total", job.getTotalFiles());
+            progress.put("done", job.getFilesDone());
+            progress.put("failed", job.getFilesFailed());
+            progress.put("skipped", job.getFilesSkipped());
+
+            Integer remaining = job.getTotalFiles() != null ? Math.max(0, job.getTotalFiles() - job.getProcessed()) : null;
+            progress.put("remaining", remaining);
+
+            //Rate of the current run only, so a resumed job doesn't count files from before the resume
+            Double filesPerSecond = null;
+            Long etaSeconds = null;
+            if (job.getStatus() == BatchJob.Status.RUNNING && job.getStartedAt() != null) {
+                double elapsedSeconds = Duration.between(job.getStartedAt(), LocalDateTime.now()).toMillis() / 1000.0;
+                int processedThisRun = job.getProcessed() - job.getProcessedAtStart();
+                if (elapsedSeconds > 0 && processedThisRun > 0) {
+                    filesPerSecond = processedThisRun / elapsedSeconds;
+                    if (remaining != null) {
+                        etaSeconds = Math.round(remaining / filesPerSecond);
+                    }
+                }
+            }
+            progress.put("filesPerSecond", filesPerSecond);
+            progress.put("etaSeconds", etaSeconds);
+
+            progress.put("createdAt", job.getCreatedAt());
+            progress.put("startedAt", job.getStartedAt());
+            progress.put("updatedAt", job.getUpdatedAt());
+            progress.put("finishedAt", job.getFinishedAt());
+            progress.put("errorMessage", job.getErrorMessage());
+        }
+        return progress;
+    }
+
+    //Files a job could not process, for retrying or reporting
+    public List<BatchJobFile> getFailedFiles(Long jobId) {
+        return batchJobFileRepository.findByJobIdAndOutcome(jobId, BatchJobFile.Outcome.FAILED);
+    }
+
+    private IllegalStateException alreadyRunning(String folderId) {
+        return new IllegalStateException("A batch job is already running for folder " + folderId);
+    }
+
+    private void submit(BatchJob job) {
+        Long jobId = job.getId();
+        executor.execute(() -> {
+            try {
+                batchProcessService.runJob(job, () -> cancelRequested.contains(jobId), this::saveCheckpoint);
+
+                synchronized (job) {
+                    job.setStatus(cancelRequested.contains(jobId) ? BatchJob.Status.CANCELLED : BatchJob.Status.COMPLETED);
+                }
+            } catch (Exception | Error e) {
+                System.err.println("Batch job " + jobId + " failed: " + e.getMessage());
+                synchronized (job) {
+                    job.setStatus(BatchJob.Status.FAILED);
+                    String message = String.valueOf(e.getMessage());
+                    job.setErrorMessage(message.length() > 1000 ? message.substring(0, 1000) : message);
+                }
+            } finally {
+                synchronized (job) {
+                    job.setFinishedAt(LocalDateTime.now());
+                    //Frees the folder for the next job
+                    job.setRunningFolderId(null);
+                }
+                try {
+                    saveCheckpoint(job);
+                } finally {
+                    cancelRequested.remove(jobId);
+                    lostJobs.remove(jobId);
+                    runningByFolder.remove(job.getFolderId(), job);
+                }
+                System.out.println("Batch job " + jobId + " finished with status " + job.getStatus());
+            }
+        });
+    }
+
+    //Store the job's counters and page token, called after every page
+    private void saveCheckpoint(BatchJob job) {
+        if (lostJobs.contains(job.getId())) {
+            return;
+        }
+        synchronized (job) {
+            job.setUpdatedAt(LocalDateTime.now());
+            batchJobRepository.save(job);
+        }
+    }
+}
@@ -1,30 +1,41 @@
 package com.organizer.drive_backend.service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.GeneralSecurityException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.HashMap;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.DateTime;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.FileList;
+import com.organizer.drive_backend.extraction.ContentHash;
+import com.organizer.drive_backend.extraction.ExtractedText;
+import com.organizer.drive_backend.extraction.ExtractionTimeoutException;
+import com.organizer.drive_backend.model.BatchJob;
+import com.organizer.drive_backend.model.BatchJobFile;
 import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentText;
+import com.organizer.drive_backend.model.DriveSyncState;
+import com.organizer.drive_backend.repository.BatchJobFileRepository;
 import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.repository.DocumentTextRepository;
+import com.organizer.drive_backend.repository.DriveSyncStateRepository;
 
 @Service
 public class BatchProcessService {
@@ -35,134 +46,425 @@ public class BatchProcessService {
     @Autowired
     private DocumentRepository documentRepository;
 
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+
     @Autowired
     private DocumentTaggerService documentTaggerService;
 
-    //JSON factory from Google API to parse and generate JSON
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    @Autowired
+    private DriveSyncStateRepository driveSyncStateRepository;
+
+    @Autowired
+    private ExtractionPersistenceService extractionPersistenceService;
+
+    @Autowired
+    private DriveClientService driveClientService;
 
-    //Path to Google service account credentials
-    private static final String SERVICE_ACCOUNT_KEY_PATH = getPathToGoogleCredentials();
+    @Autowired
+    private BatchJobFileRepository batchJobFileRepository;
+
+    //Largest page size files.list allows
+    private static final int PAGE_SIZE = 1000;
 
     //ID of folder where files are uploaded
     @Value("${google.drive.folder.id}")
     private String folderId;
 
-    //Method to find filesystem path for credentials file
-    //Take current directory as base and then append the filename
-    private static String getPathToGoogleCredentials() {
-        //Get current directory of application
-        String currentDirectory = System.getProperty("user.dir");
+    //Workers per pipeline stage, downloads and classification mostly wait on the network
+    @Value("${batch.pipeline.download-concurrency:4}")
+    private int downloadConcurrency;
+
+    @Value("${batch.pipeline.extract-concurrency:2}")
+    private int extractConcurrency;
 
-        //Join current directory with filename
-        Path filePath = Paths.get(currentDirectory, "cred.json");
+    @Value("${batch.pipeline.classify-concurrency:2}")
+    private int classifyConcurrency;
 
-        //Return filepath as a string
-        return filePath.toString();
-    };
+    @Value("${batch.pipeline.persist-concurrency:1}")
+    private int persistConcurrency;
 
-    //Method to extract text from all files in a drive folder
-    public Map<String, String> batchProcess() throws IOException, GeneralSecurityException {
-        //HashMap to store results {fileName : resultOfExtraction}
-        Map<String, String> extractionResults = new HashMap<>();
+    //Max items waiting between two stages before the earlier stage blocks
+    @Value("${batch.pipeline.queue-capacity:8}")
+    private int queueCapacity;
 
-        Drive drive = createDriveService();
+    //Stage throughput of the last job, added up over its pages
+    private volatile List<IngestionPipeline.StageStats> lastRunStats = List.of();
 
-        //Get a list of files using the following queries
-        FileList result = drive.files().list().setQ("'" + folderId + "' in parents and trashed = false")
-                .setFields("files(id, name, mimeType)")
-                .execute();
+    //Folder processed by batch jobs
+    public String getFolderId() {
+        return folderId;
+    }
+
+    //Watermark left by the last completed sync, starting point for incremental jobs
+    public String getSyncWatermark() {
+        return driveSyncStateRepository.findById(folderId)
+                .map(DriveSyncState::getLastModifiedTime)
+                .orElse(null);
+    }
+
+    //Method to extract text from all files in a drive folder for a batch job
+    //Starts at the job's saved page token and skips files already checkpointed for the job
+    //Returns when the folder is done or as soon as cancelRequested returns true
+    //Only files whose Drive checksum changed are re-extracted
+    public void runJob(BatchJob job, BooleanSupplier cancelRequested, Consumer<BatchJob> checkpoint) throws IOException {
+        Drive drive = driveClientService.getDrive();
+
+        String query = "'" + job.getFolderId() + "' in parents and trashed = false";
+        if (job.isIncremental() && job.getSinceModifiedTime() != null) {
+            //>= so files sharing the watermark timestamp are not missed, the checksum check skips them anyway
+            query += " and modifiedTime >= '" + job.getSinceModifiedTime() + "'";
+            System.out.println("Incremental sync since: " + job.getSinceModifiedTime());
+        }
 
-        System.out.println("Found files in folder: " + result.getFiles().size());
+        //Count the files once so progress can report what is remaining
+        if (job.getTotalFiles() == null) {
+            job.setTotalFiles(countFiles(drive, query));
+            checkpoint.accept(job);
+            System.out.println("Found files in folder: " + job.getTotalFiles());
+        }
+
+        String pageToken = job.getPageToken();
 
-        //Loop through each file in fileList
-        for (com.google.api.services.drive.model.File driveFile : result.getFiles()) {
-            String fileId = driveFile.getId();
-            String fileName = driveFile.getName();
-            String mimeType = driveFile.getMimeType();
+        //Every page runs its own pipeline, the job's stats are their sum
+        List<IngestionPipeline.StageStats> jobStats = List.of();
 
-            //Check if a file was already processed
-            DocumentExtraction existingExtraction = documentRepository.findByFileId(fileId);
-            if(existingExtraction != null) {
-                extractionResults.put(fileName, "Already processed on: " + existingExtraction.getExtractionTime());
-                continue;
+        //Follow nextPageToken until the whole folder has been listed
+        do {
+            if (cancelRequested.getAsBoolean()) {
+                return;
             }
 
-            System.out.println("Processing: " + fileName + " (" + mimeType + ")");
+            FileList result = drive.files().list().setQ(query)
+                    .setPageSize(PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields("nextPageToken, files(id, name, mimeType, md5Checksum, modifiedTime)")
+                    .execute();
 
-            //Download the files to extract
-            try {
-                File localFile = downloadFile(drive, fileId, fileName);
-                String extractedText = documentProcessor.extractText(localFile, mimeType);
+            List<String> pageFileIds = result.getFiles().stream()
+                    .map(com.google.api.services.drive.model.File::getId)
+                    .collect(Collectors.toList());
 
-                //Classify the document using our simplified tag structure
-                Map<String, Object> classificationResult = Map.of(); //Default empty map
-                String tagString = "";
-                String tagJson = "{}";
+            //Files this job already handled before it was stopped
+            Set<String> checkpointed = pageFileIds.isEmpty() ? Set.of() : batchJobFileRepository.findCheckpointedFileIds(job.getId(), pageFileIds);
 
-                if (extractedText != null && !extractedText.isEmpty()) {
-                    classificationResult = documentTaggerService.classifyDocument(extractedText);
-                    //For database storage
-                    tagString = documentTaggerService.getTagString(classificationResult);
-                    //For JSON variant 
-                    tagJson = documentTaggerService.getTagJson(classificationResult);
+            //Fetch the records for the whole page at once
+            Map<String, DocumentExtraction> existingExtractions = documentRepository.findAllByFileIds(pageFileIds);
 
-                    System.out.println("Document classified with tags: " + tagString);
+            //Rows are written in chunked JDBC batches instead of one round trip per file
+            ExtractionPersistenceService.BulkWriter writer = extractionPersistenceService.openWriter();
 
-                    //Check if it's an academic document
-                    boolean isAcademic = documentTaggerService.isAcademicDocument(classificationResult);
-                    System.out.println("Document type: " + (isAcademic ? "academic" : "professional"));
+            //Collect the files that still need to go through the pipeline
+            List<IngestionItem> pending = new ArrayList<>();
+            for (com.google.api.services.drive.model.File driveFile : result.getFiles()) {
+                if (checkpointed.contains(driveFile.getId())) {
+                    continue;
                 }
 
-                //Create an extraction object and sets their attributes to submit to the database
-                DocumentExtraction extraction = new DocumentExtraction();
-                extraction.setFileName(fileName);
-                extraction.setFileId(fileId);
-                extraction.setMimeType(mimeType);
-                extraction.setExtractedText(extractedText);
-                extraction.setExtractionTime(LocalDateTime.now());
-                extraction.setStatus("Success");
-                extraction.setTags(tagString);
-                extraction.setTagClassification(tagJson);
-                documentRepository.save(extraction);
-
-                extractionResults.put(fileName, "Successfully processed and tagged: " + tagString);
-
-                if (!localFile.delete()) {
-                    System.out.println("Failed to delete temp file.");
+                DateTime modifiedTime = driveFile.getModifiedTime();
+                recordModifiedTime(job, modifiedTime);
+
+                //Check if a file was already processed
+                DocumentExtraction existingExtraction = existingExtractions.get(driveFile.getId());
+                if (existingExtraction != null && !hasContentChanged(existingExtraction, driveFile)) {
+                    writer.add(() -> List.of(checkpointFor(job, driveFile.getId(), driveFile.getName(), BatchJobFile.Outcome.SKIPPED,
+                            "Already processed on: " + existingExtraction.getExtractionTime())));
+                    synchronized (job) {
+                        job.setFilesSkipped(job.getFilesSkipped() + 1);
+                    }
+                    continue;
                 }
 
-                System.out.println("Extracted text from: " + localFile.getName());
-            } catch (Exception e) {
-                System.err.println("Error processing file: " + fileName + ": " + e.getMessage());
-                DocumentExtraction extraction = new DocumentExtraction();
-                extraction.setFileName(fileName);
-                extraction.setFileId(fileId);
-                extraction.setMimeType(mimeType);
-                extraction.setExtractionTime(LocalDateTime.now());
-                extraction.setStatus("Failed: " + e.getMessage());
-                documentRepository.save(extraction);
-
-                extractionResults.put(fileName, "Processing failed: " + e.getMessage());
+                IngestionItem item = new IngestionItem(driveFile.getId(), driveFile.getName(), driveFile.getMimeType());
+                item.md5Checksum = driveFile.getMd5Checksum();
+                item.driveModifiedTime = toLocalDateTime(modifiedTime);
+                item.listedModifiedTime = modifiedTime;
+                if (existingExtraction != null) {
+                    //Content changed, overwrite the existing row instead of adding a second one
+                    item.existingId = existingExtraction.getId();
+                }
+                pending.add(item);
+            }
+
+            //Download -> extract -> classify -> persist, each stage with its own workers
+            IngestionPipeline<IngestionItem> pipeline = new IngestionPipeline<IngestionItem>("batch", queueCapacity)
+                    .stage("download", downloadConcurrency, item -> {
+                        System.out.println("Processing: " + item.fileName + " (" + item.mimeType + ")");
+                        downloadFile(drive, item);
+                    })
+                    .stage("extract", extractConcurrency, item -> {
+                        try {
+                            if (reuseKnownExtraction(item)) {
+                                return;
+                            }
+                            ExtractedText extracted = documentProcessor.extract(item.localFile, item.mimeType);
+                            item.extractedText = extracted.text();
+                            item.textTruncated = extracted.truncated();
+                        } finally {
+                            deleteLocalFile(item);
+                        }
+                    })
+                    .stage("classify", classifyConcurrency, this::classify)
+                    .sink("persist", persistConcurrency, (item, failure) -> persist(job, item, failure, writer));
+
+            boolean stoppedMidPage;
+            try (writer) {
+                List<IngestionPipeline.StageStats> stats = pipeline.run(pending, cancelRequested);
+                stats.forEach(stage -> System.out.println("Batch stage " + stage));
+                jobStats = addUp(jobStats, stats);
+                lastRunStats = jobStats;
+                stoppedMidPage = cancelRequested.getAsBoolean();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch processing was interrupted", e);
             }
+
+            //A page stopped part way is listed again on resume, its finished files are skipped through the checkpoints
+            if (stoppedMidPage) {
+                checkpoint.accept(job);
+                return;
+            }
+
+            pageToken = result.getNextPageToken();
+            job.setPageToken(pageToken);
+            checkpoint.accept(job);
+        } while (pageToken != null);
+
+        //Only move the watermark once the whole listing went through the pipeline
+        DriveSyncState syncState = driveSyncStateRepository.findById(job.getFolderId()).orElse(null);
+        if (syncState == null) {
+            syncState = new DriveSyncState();
+            syncState.setFolderId(job.getFolderId());
+        }
+        String watermark = nextWatermark(job);
+        if (watermark != null) {
+            syncState.setLastModifiedTime(watermark);
+        }
+        syncState.setLastSyncTime(LocalDateTime.now());
+        driveSyncStateRepository.save(syncState);
+    }
+
+    //Throughput of each stage over the most recent job (so far, while it is running)
+    public List<IngestionPipeline.StageStats> getLastRunStats() {
+        return lastRunStats;
+    }
+
+    private static List<IngestionPipeline.StageStats> addUp(List<IngestionPipeline.StageStats> total,
+                                                            List<IngestionPipeline.StageStats> page) {
+        if (total.isEmpty()) {
+            return page;
+        }
+        List<IngestionPipeline.StageStats> sum = new ArrayList<>(total.size());
+        for (int i = 0; i < total.size(); i++) {
+            sum.add(total.get(i).plus(page.get(i)));
+        }
+        return sum;
+    }
+
+    //Decide if the Drive copy differs from what was extracted
+    private boolean hasContentChanged(DocumentExtraction existingExtraction, com.google.api.services.drive.model.File driveFile) {
+        //Failed and timed out files are retried on every run, whatever their checksum
+        //Incremental runs list them again because the watermark never moves past them (see nextWatermark)
+        if (!"Success".equals(existingExtraction.getStatus())) {
+            return true;
+        }
+
+        //Rows from before checksums were stored are treated as up to date
+        if (existingExtraction.getMd5Checksum() == null && existingExtraction.getDriveModifiedTime() == null) {
+            return false;
+        }
+
+        //Native Google files have no checksum, fall back to the modified time
+        if (driveFile.getMd5Checksum() == null) {
+            LocalDateTime modifiedTime = toLocalDateTime(driveFile.getModifiedTime());
+            return modifiedTime != null && !modifiedTime.equals(existingExtraction.getDriveModifiedTime());
         }
 
-        return extractionResults;
+        return !driveFile.getMd5Checksum().equals(existingExtraction.getMd5Checksum());
+    }
+
+    private LocalDateTime toLocalDateTime(DateTime dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(dateTime.getValue()), ZoneOffset.UTC);
+    }
+
+    //Count the files matching the query with an ID-only listing
+    private int countFiles(Drive drive, String query) throws IOException {
+        int count = 0;
+        String pageToken = null;
+        do {
+            FileList result = drive.files().list().setQ(query)
+                    .setPageSize(PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields("nextPageToken, files(id)")
+                    .execute();
+            count += result.getFiles().size();
+            pageToken = result.getNextPageToken();
+        } while (pageToken != null);
+        return count;
+    }
+
+    //Keep the newest modifiedTime on the job, it becomes the sync watermark
+    static void recordModifiedTime(BatchJob job, DateTime modifiedTime) {
+        if (modifiedTime == null) {
+            return;
+        }
+        String newest = job.getNewestModifiedTime();
+        if (newest == null || modifiedTime.getValue() > DateTime.parseRfc3339(newest).getValue()) {
+            job.setNewestModifiedTime(modifiedTime.toStringRfc3339());
+        }
+    }
+
+    //Keep the oldest modifiedTime of a file that didn't make it, called from the persist workers
+    static void recordFailedModifiedTime(BatchJob job, DateTime modifiedTime) {
+        if (modifiedTime == null) {
+            return;
+        }
+        synchronized (job) {
+            String oldest = job.getOldestFailedModifiedTime();
+            if (oldest == null || modifiedTime.getValue() < DateTime.parseRfc3339(oldest).getValue()) {
+                job.setOldestFailedModifiedTime(modifiedTime.toStringRfc3339());
+            }
+        }
+    }
+
+    //Newest modifiedTime of the job, held back to its oldest failed file so incremental runs (modifiedTime >= watermark)
+    //keep listing that file until it goes through
+    static String nextWatermark(BatchJob job) {
+        String newest = job.getNewestModifiedTime();
+        String oldestFailed = job.getOldestFailedModifiedTime();
+        if (oldestFailed == null) {
+            return newest;
+        }
+        if (newest == null || DateTime.parseRfc3339(oldestFailed).getValue() < DateTime.parseRfc3339(newest).getValue()) {
+            return oldestFailed;
+        }
+        return newest;
+    }
+
+    private BatchJobFile checkpointFor(BatchJob job, String fileId, String fileName, BatchJobFile.Outcome outcome, String message) {
+        BatchJobFile checkpoint = new BatchJobFile();
+        checkpoint.setJobId(job.getId());
+        checkpoint.setFileId(fileId);
+        checkpoint.setFileName(fileName);
+        checkpoint.setOutcome(outcome);
+        checkpoint.setMessage(message != null && message.length() > 1000 ? message.substring(0, 1000) : message);
+        checkpoint.setProcessedAt(LocalDateTime.now());
+        return checkpoint;
+    }
+
+    //Classify the document using our simplified tag structure
+    private void classify(IngestionItem item) {
+        if (item.reused || item.extractedText == null || item.extractedText.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> classificationResult = documentTaggerService.classifyDocument(item.extractedText);
+        //For database storage
+        item.tagString = documentTaggerService.getTagString(classificationResult);
+        //For JSON variant
+        item.tagJson = documentTaggerService.getTagJson(classificationResult);
+
+        System.out.println("Document classified with tags: " + item.tagString);
+
+        //Check if it's an academic document
+        boolean isAcademic = documentTaggerService.isAcademicDocument(classificationResult);
+        System.out.println("Document type: " + (isAcademic ? "academic" : "professional"));
+    }
+
+    //Create an extraction object and sets their attributes to submit to the database
+    //The job checkpoint for the file is written in the same transaction
+    private void persist(BatchJob job, IngestionItem item, Exception failure, ExtractionPersistenceService.BulkWriter writer) {
+        LocalDateTime extractionTime = LocalDateTime.now();
+
+        if (failure != null) {
+            //Temp file may still be around if the download succeeded but a later stage did not
+            deleteLocalFile(item);
+            System.err.println("Error processing file: " + item.fileName + ": " + failure.getMessage());
+            //Abandoned documents get their own status so they can be found and retried separately
+            String status = failure instanceof ExtractionTimeoutException
+                    ? DocumentExtraction.STATUS_TIMED_OUT : "Failed: " + failure.getMessage();
+            writer.add(() -> List.of(newExtraction(item, extractionTime, status),
+                    checkpointFor(job, item.fileId, item.fileName, BatchJobFile.Outcome.FAILED, "Processing failed: " + failure.getMessage())));
+            recordFailedModifiedTime(job, item.listedModifiedTime);
+
+            synchronized (job) {
+                job.setFilesFailed(job.getFilesFailed() + 1);
+            }
+            return;
+        }
+
+        //Compressed once, every attempt to save gets its own row with the same bytes
+        DocumentText text = item.reusedText != null ? item.reusedText : DocumentText.of(item.extractedText);
+        writer.add(() -> {
+            DocumentExtraction extraction = newExtraction(item, extractionTime, "Success");
+            extraction.setText(text != null ? text.copy() : null);
+            extraction.setTextTruncated(item.textTruncated);
+            extraction.setContentHash(item.contentHash);
+            extraction.setTags(item.tagString);
+            extraction.setTagClassification(item.tagJson);
+            return List.of(extraction, checkpointFor(job, item.fileId, item.fileName, BatchJobFile.Outcome.SUCCESS,
+                    "Successfully processed and tagged: " + item.tagString));
+        });
+
+        synchronized (job) {
+            job.setFilesDone(job.getFilesDone() + 1);
+        }
+        System.out.println("Extracted text from: " + item.fileName);
+    }
+
+    private DocumentExtraction newExtraction(IngestionItem item, LocalDateTime extractionTime, String status) {
+        DocumentExtraction extraction = new DocumentExtraction();
+        extraction.setId(item.existingId);
+        extraction.setFileName(item.fileName);
+        extraction.setFileId(item.fileId);
+        extraction.setMimeType(item.mimeType);
+        extraction.setMd5Checksum(item.md5Checksum);
+        extraction.setDriveModifiedTime(item.driveModifiedTime);
+        extraction.setExtractionTime(extractionTime);
+        extraction.setStatus(status);
+        return extraction;
+    }
+
+    private void deleteLocalFile(IngestionItem item) {
+        if (item.localFile != null && item.localFile.exists() && !item.localFile.delete()) {
+            System.out.println("Failed to delete temp file.");
+        }
     }
 
     //Method to download the files
-    private File downloadFile(Drive drive, String fileId, String fileName) throws IOException {
-        String extension = getExtensionFromFileName(fileName);
+    //Download into a temp file, hashing the bytes on the way
+    private void downloadFile(Drive drive, IngestionItem item) throws IOException {
+        String extension = getExtensionFromFileName(item.fileName);
 
         //Create the tempFile on the user's device
         File tempFile = File.createTempFile("gdrive_", extension);
+        item.localFile = tempFile;
 
         //Write data from drive files to the tempFile
-        try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
-            drive.files().get(fileId).executeMediaAndDownloadTo(outputStream);
+        MessageDigest digest = ContentHash.newDigest();
+        try (OutputStream outputStream = new DigestOutputStream(new FileOutputStream(tempFile), digest)) {
+            drive.files().get(item.fileId).executeMediaAndDownloadTo(outputStream);
         }
+        item.contentHash = ContentHash.toHex(digest);
+    }
 
-        return tempFile;
+    //Copy text and tags from an earlier extraction of the same bytes, skipping extraction and classification
+    private boolean reuseKnownExtraction(IngestionItem item) {
+        DocumentExtraction known = documentRepository.findReusableExtraction(item.contentHash);
+        if (known == null) {
+            return false;
+        }
+        System.out.println("Reusing extraction of identical content for: " + item.fileName);
+        //The compressed text is copied as is, it doesn't need to be decompressed since classification is skipped
+        item.reusedText = documentTextRepository.findByDocumentId(known.getId());
+        item.textTruncated = Boolean.TRUE.equals(known.getTextTruncated());
+        item.tagString = known.getTags();
+        item.tagJson = known.getTagClassification();
+        item.reused = true;
+        return true;
     }
 
     //Returns the extension of the file
@@ -175,16 +477,31 @@ public class BatchProcessService {
         return ".tmp";
     }
 
-    private Drive createDriveService() throws GeneralSecurityException, IOException {
-        //Load Google credentials from the credential file
-        //Scoped to only access Google Drive
-        GoogleCredential credential = GoogleCredential.fromStream(new FileInputStream(SERVICE_ACCOUNT_KEY_PATH)).createScoped(Collections.singleton(DriveScopes.DRIVE));
-
-        //Create and return a new Drive instance with HTTP, JSON Factory for parsing, Google Credentials
-        return new Drive.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(),
-                JSON_FACTORY,
-                credential)
-                .build();
+    //State of one Drive file as it moves through the pipeline
+    //Each stage only touches it after the previous one is done, so no locking is needed
+    private static class IngestionItem {
+        private final String fileId;
+        private final String fileName;
+        private final String mimeType;
+        private File localFile;
+        private String extractedText;
+        private DocumentText reusedText;
+        private boolean textTruncated;
+        private String contentHash;
+        //Text and tags were copied from an earlier extraction of the same content
+        private boolean reused;
+        private String tagString = "";
+        private String tagJson = "{}";
+        private String md5Checksum;
+        private LocalDateTime driveModifiedTime;
+        //modifiedTime as listed, kept for the watermark
+        private DateTime listedModifiedTime;
+        private Long existingId;
+
+        private IngestionItem(String fileId, String fileName, String mimeType) {
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+        }
     }
-}
\ No newline at end of file
+}
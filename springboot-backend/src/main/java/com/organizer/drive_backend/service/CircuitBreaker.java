@@ -0,0 +1,91 @@
+package com.organizer.drive_backend.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+//Stops calling a dependency after it failed several times in a row
+//CLOSED: calls go through. OPEN: calls are refused until the open duration has passed.
+//HALF_OPEN: one trial call is let through, it closes the breaker again if it succeeds
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMillis) {
+        this(name, failureThreshold, openDurationMillis, System::nanoTime);
+    }
+
+    //Clock is only swapped out by tests
+    CircuitBreaker(String name, int failureThreshold, long openDurationMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationNanos = openDurationMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    //Whether a call may go ahead, every permitted call must be followed by onSuccess or onFailure
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) {
+            System.out.println("Circuit breaker " + name + " closed");
+            state = State.CLOSED;
+        }
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            timesOpened.incrementAndGet();
+            System.err.println("Circuit breaker " + name + " opened after " + consecutiveFailures + " consecutive failures");
+        }
+    }
+
+    //Permitted call that never reached the dependency, counts as neither success nor failure
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public long getTimesOpened() {
+        return timesOpened.get();
+    }
+}
@@ -0,0 +1,174 @@
+package com.organizer.drive_backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Picks the parts of a long document that are worth sending to the classifier
+//The zero-shot model only reads about a thousand words, so instead of the whole text we send
+//the beginning, the headings and a few evenly spaced samples from the middle
+public class ClassificationSampler {
+    //Lines longer than this are body text, not headings
+    private static final int MAX_HEADING_WORDS = 12;
+
+    private final int chunkWords;
+    private final int maxChunks;
+
+    public ClassificationSampler(int chunkWords, int maxWords) {
+        this.chunkWords = Math.max(1, chunkWords);
+        this.maxChunks = Math.max(1, maxWords / this.chunkWords);
+    }
+
+    //Whitespace-normalised chunks of at most chunkWords words, never more than maxWords in total
+    //A document that fits in one chunk comes back as a single chunk
+    public List<String> sample(String text) {
+        Words words = Words.scan(text == null ? "" : text);
+        List<String> chunks = new ArrayList<>();
+        if (words.count == 0) {
+            return chunks;
+        }
+        if (words.count <= chunkWords) {
+            chunks.add(words.join(0, words.count));
+            return chunks;
+        }
+
+        //Beginning: titles, abstracts and letter heads carry most of the signal
+        chunks.add(words.join(0, chunkWords));
+
+        //Headings after the first chunk, they summarise sections we won't sample
+        int headingWords = 0;
+        List<String> headings = new ArrayList<>();
+        for (int i = 0; i < words.headingCount && headingWords < chunkWords; i++) {
+            int start = words.headingStarts[i];
+            int end = Math.min(words.headingEnds[i], start + chunkWords - headingWords);
+            if (start >= chunkWords) {
+                headings.add(words.join(start, end));
+                headingWords += end - start;
+            }
+        }
+        boolean useHeadings = chunks.size() < maxChunks && headings.size() >= 2;
+        int middleChunks = maxChunks - chunks.size() - (useHeadings ? 1 : 0);
+
+        //Evenly spaced windows over the rest of the text, without overlapping each other or the beginning
+        int rest = words.count - chunkWords;
+        int windows = Math.min(middleChunks, rest / chunkWords);
+        if (windows == 0 && middleChunks > 0) {
+            chunks.add(words.join(chunkWords, Math.min(words.count, 2 * chunkWords)));
+        }
+        for (int i = 0; i < windows; i++) {
+            int slot = rest / windows;
+            int start = chunkWords + i * slot + (slot - chunkWords) / 2;
+            chunks.add(words.join(start, start + chunkWords));
+        }
+
+        if (useHeadings) {
+            chunks.add(String.join(" ", headings));
+        }
+        return chunks;
+    }
+
+    //Word boundaries of the text plus the word ranges of lines that look like headings
+    private static final class Words {
+        private final String text;
+        private int[] starts = new int[256];
+        private int[] ends = new int[256];
+        private int count;
+
+        private int[] headingStarts = new int[16];
+        private int[] headingEnds = new int[16];
+        private int headingCount;
+
+        private Words(String text) {
+            this.text = text;
+        }
+
+        static Words scan(String text) {
+            Words words = new Words(text);
+            int lineFirstWord = 0;
+            int i = 0;
+            while (i <= text.length()) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    words.endLine(lineFirstWord);
+                    lineFirstWord = words.count;
+                    i++;
+                    continue;
+                }
+                if (Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                words.add(start, i);
+            }
+            return words;
+        }
+
+        private void add(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+        private void endLine(int firstWord) {
+            int lineWords = count - firstWord;
+            if (lineWords == 0 || lineWords > MAX_HEADING_WORDS || !looksLikeHeading(firstWord, count)) {
+                return;
+            }
+            if (headingCount == headingStarts.length) {
+                headingStarts = Arrays.copyOf(headingStarts, headingCount * 2);
+                headingEnds = Arrays.copyOf(headingEnds, headingCount * 2);
+            }
+            headingStarts[headingCount] = firstWord;
+            headingEnds[headingCount] = count;
+            headingCount++;
+        }
+
+        //Short line that doesn't end a sentence and is numbered, upper case or mostly capitalised
+        private boolean looksLikeHeading(int from, int to) {
+            char last = text.charAt(ends[to - 1] - 1);
+            if (last == '.' || last == ',' || last == ';') {
+                return false;
+            }
+            if (Character.isDigit(text.charAt(starts[from])) && to - from > 1) {
+                return true;
+            }
+
+            int capitalised = 0;
+            int letters = 0;
+            boolean upperCase = true;
+            for (int w = from; w < to; w++) {
+                char first = text.charAt(starts[w]);
+                if (Character.isLetter(first)) {
+                    letters++;
+                    if (Character.isUpperCase(first)) {
+                        capitalised++;
+                    }
+                }
+                for (int c = starts[w]; c < ends[w] && upperCase; c++) {
+                    if (Character.isLowerCase(text.charAt(c))) {
+                        upperCase = false;
+                    }
+                }
+            }
+            return letters > 0 && (upperCase || capitalised * 2 > letters);
+        }
+
+        String join(int from, int to) {
+            StringBuilder joined = new StringBuilder();
+            for (int w = from; w < to; w++) {
+                if (joined.length() > 0) {
+                    joined.append(' ');
+                }
+                joined.append(text, starts[w], ends[w]);
+            }
+            return joined.toString();
+        }
+    }
+}
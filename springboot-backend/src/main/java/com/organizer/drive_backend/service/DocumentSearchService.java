@@ -0,0 +1,366 @@
+package com.organizer.drive_backend.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.organizer.drive_backend.model.DocumentText;
+import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.repository.DocumentTextRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+//Full-text index over extracted text, stored in an embedded Lucene directory
+//Documents are keyed by Drive file ID and ranked with BM25 (Lucene's default similarity)
+//Text is tokenised on Unicode word boundaries and lower-cased, it is indexed but not stored
+@Service
+public class DocumentSearchService {
+    private static final String FILE_ID_FIELD = "fileId";
+    private static final String TEXT_FIELD = "text";
+
+    //Stored in the commit data, an index written with another layout is rebuilt at startup
+    private static final String FORMAT_KEY = "format";
+    private static final String FORMAT = "2";
+
+    //Best match first, file ID breaks ties so every hit has a fixed position to resume after
+    private static final Sort RANKING = new Sort(SortField.FIELD_SCORE, new SortField(FILE_ID_FIELD, SortField.Type.STRING));
+
+    //Documents read from the database per query while rebuilding
+    private static final int REBUILD_PAGE_SIZE = 100;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+
+    @Value("${search.index.dir:search-index}")
+    private String indexDir;
+
+    //How quickly new documents show up in searches, and how often they are made durable on disk
+    @Value("${search.index.refresh-ms:1000}")
+    private long refreshMs;
+
+    @Value("${search.index.commit-ms:30000}")
+    private long commitMs;
+
+    private final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService maintenance;
+
+    //False until the index has been opened and matches the database, callers fall back to SQL meanwhile
+    private volatile boolean ready;
+
+    //Files indexed or removed while a rebuild runs, their rows read by the rebuild may already be out of date
+    //Guarded by updateLock, together with the rebuild's deleteAll so no update can land before it and be wiped
+    private final Object updateLock = new Object();
+    private Set<String> updatedDuringRebuild;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong totalSearchNanos = new AtomicLong();
+
+    @PostConstruct
+    public void openIndex() {
+        try {
+            directory = FSDirectory.open(Paths.get(indexDir));
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(directory, config);
+            searcherManager = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            System.err.println("Could not open search index in " + indexDir + ", keyword search will use the database: " + e.getMessage());
+            return;
+        }
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::commit, commitMs, commitMs, TimeUnit.MILLISECONDS);
+
+        //Updates since the last commit are lost if the server stops abruptly, so check the index against the database
+        maintenance.execute(this::rebuildIfStale);
+    }
+
+    @PreDestroy
+    public void closeIndex() {
+        ready = false;
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing search index: " + e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    //Add or replace a document's text, a null text removes it from the index
+    //Called once the row is committed, so a rebuild reading the database never misses it
+    public void index(String fileId, String text) {
+        if (writer == null || fileId == null) {
+            return;
+        }
+        if (text == null) {
+            delete(fileId);
+            return;
+        }
+        synchronized (updateLock) {
+            if (updatedDuringRebuild != null) {
+                updatedDuringRebuild.add(fileId);
+            }
+            write(fileId, text);
+        }
+    }
+
+    private void write(String fileId, String text) {
+        try {
+            Document document = new Document();
+            document.add(new StringField(FILE_ID_FIELD, fileId, Field.Store.YES));
+            document.add(new SortedDocValuesField(FILE_ID_FIELD, new BytesRef(fileId)));
+            document.add(new TextField(TEXT_FIELD, text, Field.Store.NO));
+            writer.updateDocument(new Term(FILE_ID_FIELD, fileId), document);
+            indexed.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error indexing file " + fileId + ": " + e.getMessage());
+        }
+    }
+
+    public void delete(String fileId) {
+        if (writer == null || fileId == null) {
+            return;
+        }
+        synchronized (updateLock) {
+            if (updatedDuringRebuild != null) {
+                updatedDuringRebuild.add(fileId);
+            }
+            try {
+                writer.deleteDocuments(new Term(FILE_ID_FIELD, fileId));
+                deleted.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error removing file " + fileId + " from the search index: " + e.getMessage());
+            }
+        }
+    }
+
+    //File IDs of the documents containing the keyword, best BM25 score first
+    //A keyword of several words matches them as a phrase, like the old substring search did
+    //Returns up to count hits ranked after the given one (from the start when it is null)
+    public List<SearchHit> search(String keyword, SearchHit after, int count) throws IOException {
+        List<String> terms = analyze(keyword);
+        List<SearchHit> hits = new ArrayList<>();
+        if (terms.isEmpty() || searcherManager == null) {
+            return hits;
+        }
+
+        Query query;
+        if (terms.size() == 1) {
+            query = new TermQuery(new Term(TEXT_FIELD, terms.get(0)));
+        } else {
+            PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+            terms.forEach(term -> phrase.add(new Term(TEXT_FIELD, term)));
+            query = phrase.build();
+        }
+
+        long start = System.nanoTime();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            //The last doc number makes a hit with the same score and file ID (the one resumed after) count as already seen
+            TopDocs topDocs = after == null
+                    ? searcher.search(query, count, RANKING, true)
+                    : searcher.searchAfter(new FieldDoc(searcher.getIndexReader().maxDoc() - 1, after.score(),
+                            new Object[] { after.score(), new BytesRef(after.fileId()) }), query, count, RANKING, true);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                String fileId = searcher.storedFields().document(scoreDoc.doc).get(FILE_ID_FIELD);
+                hits.add(new SearchHit(fileId, scoreDoc.score));
+            }
+        } finally {
+            searcherManager.release(searcher);
+            searches.incrementAndGet();
+            totalSearchNanos.addAndGet(System.nanoTime() - start);
+        }
+        return hits;
+    }
+
+    public record SearchHit(String fileId, float score) {
+    }
+
+    //Same tokenising and lower-casing the text went through when it was indexed
+    List<String> analyze(String keyword) throws IOException {
+        List<String> terms = new ArrayList<>();
+        if (keyword == null) {
+            return terms;
+        }
+        try (TokenStream tokens = analyzer.tokenStream(TEXT_FIELD, keyword)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        }
+        return terms;
+    }
+
+    //Make recent updates searchable
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error refreshing search index: " + e.getMessage());
+        }
+    }
+
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error committing search index: " + e.getMessage());
+        }
+    }
+
+    //Rebuild from document_texts when the index has an older layout or doesn't hold the same number of documents as the database
+    private void rebuildIfStale() {
+        try {
+            String format = null;
+            Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (FORMAT_KEY.equals(entry.getKey())) {
+                        format = entry.getValue();
+                    }
+                }
+            }
+            long expected = documentRepository.countFileIdsWithText();
+            long actual = writer.getDocStats().numDocs;
+            if (!FORMAT.equals(format) && actual > 0) {
+                System.out.println("Search index was written in an older format, rebuilding");
+                rebuild();
+            } else if (expected != actual) {
+                System.out.println("Search index has " + actual + " documents, database has " + expected + ", rebuilding");
+                rebuild();
+            }
+            writer.setLiveCommitData(Map.of(FORMAT_KEY, FORMAT).entrySet());
+            ready = true;
+        } catch (Exception e) {
+            System.err.println("Could not check or rebuild search index, keyword search will use the database: " + e.getMessage());
+        }
+    }
+
+    //Re-index every document with text, a page at a time so the corpus is never in memory at once
+    //Uploads and batch jobs keep indexing meanwhile, their updates win over the rows the rebuild read
+    public void rebuild() throws IOException {
+        ready = false;
+        synchronized (updateLock) {
+            writer.deleteAll();
+            updatedDuringRebuild = ConcurrentHashMap.newKeySet();
+        }
+
+        long afterId = 0;
+        long count = 0;
+        try {
+            while (true) {
+                List<Object[]> page = documentTextRepository.findTextsAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (Object[] row : page) {
+                    afterId = (Long) row[0];
+                    String fileId = (String) row[1];
+                    String text = ((DocumentText) row[2]).decompress();
+                    synchronized (updateLock) {
+                        if (fileId != null && text != null && !updatedDuringRebuild.contains(fileId)) {
+                            write(fileId, text);
+                        }
+                    }
+                }
+                count += page.size();
+            }
+        } finally {
+            synchronized (updateLock) {
+                updatedDuringRebuild = null;
+            }
+        }
+
+        writer.setLiveCommitData(Map.of(FORMAT_KEY, FORMAT).entrySet());
+        writer.commit();
+        searcherManager.maybeRefresh();
+        ready = true;
+        System.out.println("Rebuilt search index with " + count + " documents");
+    }
+
+    //Index size and search counts for the metrics endpoint
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        metrics.put("documents", writer != null ? writer.getDocStats().numDocs : 0);
+        metrics.put("indexed", indexed.get());
+        metrics.put("deleted", deleted.get());
+        metrics.put("searches", searches.get());
+        long count = searches.get();
+        metrics.put("averageSearchMs", count > 0 ? totalSearchNanos.get() / count / 1_000_000.0 : 0);
+        return metrics;
+    }
+}
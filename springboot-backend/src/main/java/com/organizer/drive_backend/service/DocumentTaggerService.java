@@ -2,70 +2,270 @@ package com.organizer.drive_backend.service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 @Service
 public class DocumentTaggerService {
 
-    private final RestTemplate restTemplate;
+    private RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
     @Value("${document.classifier.url}")
     private String classifierUrl;
 
-    public DocumentTaggerService() {
-        //Rest Template used because Python backend is a REST API
-        this.restTemplate = new RestTemplate();
+    @Value("${document.classifier.pool.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${document.classifier.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    //Classifying a long document can take a while, but not forever
+    @Value("${document.classifier.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    //Calls allowed at the same time, callers over the limit wait up to bulkhead-wait-ms and then get empty tags
+    @Value("${document.classifier.bulkhead.max-concurrent:8}")
+    private int maxConcurrentCalls;
+
+    @Value("${document.classifier.bulkhead.wait-ms:500}")
+    private long bulkheadWaitMs;
+
+    //Consecutive failures before the breaker opens, and how long it stays open before a trial call
+    @Value("${document.classifier.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${document.classifier.breaker.open-duration-ms:30000}")
+    private long breakerOpenDurationMs;
+
+    //Long documents are sampled in parts of chunk-words words, sent together as one text of at most max-words
+    //Keep max-words under the 1024 words the classifier reads, so one model run covers the whole sample
+    @Value("${document.classifier.sample.chunk-words:250}")
+    private int sampleChunkWords;
 
+    @Value("${document.classifier.sample.max-words:1000}")
+    private int sampleMaxWords;
+
+    public static final List<String> ACADEMIC_TAGS = List.of("math-science", "humanities", "computer",
+            "business-studies", "arts", "assignment");
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private Semaphore bulkhead;
+    private CircuitBreaker circuitBreaker;
+    private ClassificationSampler sampler;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong sampledDocuments = new AtomicLong();
+    private final AtomicLong charsReceived = new AtomicLong();
+    private final AtomicLong charsSent = new AtomicLong();
+
+    public DocumentTaggerService() {
         //Used to convert Java objects to JSON and vice versa
         this.objectMapper = new ObjectMapper();
     }
 
-    //Function to turn text into JSON to send to Python
+    @PostConstruct
+    public void createClient() {
+        //Pooled connections so calls reuse keep-alive connections to the Python backend
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(60))
+                .build();
+
+        //Rest Template used because Python backend is a REST API
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        circuitBreaker = new CircuitBreaker("classifier", breakerFailureThreshold, breakerOpenDurationMs);
+        sampler = new ClassificationSampler(sampleChunkWords, sampleMaxWords);
+    }
+
+    @PreDestroy
+    public void closeClient() {
+        try {
+            httpClient.close();
+        } catch (Exception e) {
+            System.err.println("Error closing classifier client: " + e.getMessage());
+        }
+    }
+
+    //Classify a document from a sample of its text
+    //Short documents are sent whole, long ones as their beginning, a few evenly spaced parts and their headings,
+    //joined into one text that fits the classifier's window, so every document costs a single call
     public Map<String, Object> classifyDocument(String text) {
-        HttpHeaders headers = new HttpHeaders();
+        documents.incrementAndGet();
+        charsReceived.addAndGet(text == null ? 0 : text.length());
 
-        //Set request content type to JSON
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        List<String> parts = sampler.sample(text);
+        if (parts.isEmpty()) {
+            return emptyResult();
+        }
+        if (parts.size() > 1) {
+            sampledDocuments.incrementAndGet();
+        }
+        //One part per line, so the classifier's keyword rules still see headings on their own
+        String sample = String.join("\n", parts);
+        charsSent.addAndGet(sample.length());
+        return classifyText(sample);
+    }
 
-        //Attributes in the request body will be String and String
-        //Map will be turned into JSON
-        Map<String, String> requestBody = new HashMap<>();
-        requestBody.put("text", text);
+    //Function to turn text into JSON to send to Python
+    //Returns empty tags straight away while the breaker is open or too many calls are in flight
+    private Map<String, Object> classifyText(String text) {
+        calls.incrementAndGet();
 
-        //HttpEntity request will take the requestBody and headers from above
-        HttpEntity<Map<String, String>> request = new HttpEntity<>(requestBody, headers);
+        if (!circuitBreaker.tryAcquirePermission()) {
+            shortCircuited.incrementAndGet();
+            return emptyResult();
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            //Not the classifier's fault, release the breaker permission without counting a failure
+            bulkheadRejections.incrementAndGet();
+            circuitBreaker.onIgnored();
+            return emptyResult();
+        }
 
-        //Try to post the JSON request at the classifer URL
+        long start = System.nanoTime();
         try {
-            Map<String, Object> response = restTemplate.postForObject(
-                    classifierUrl, request, Map.class);
+            Map<String, Object> response = postToClassifier(text);
+            recordLatency(System.nanoTime() - start);
 
             //Return the response from the Python backend
             if (response != null) {
+                successes.incrementAndGet();
+                circuitBreaker.onSuccess();
                 return response;
             }
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
         } catch (Exception e) {
+            recordLatency(System.nanoTime() - start);
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
             System.err.println("Error calling classification service: " + e.getMessage());
+        } finally {
+            bulkhead.release();
         }
 
         //Return empty result if classification failed
+        return emptyResult();
+    }
+
+    private Map<String, Object> postToClassifier(String text) {
+        HttpHeaders headers = new HttpHeaders();
+
+        //Set request content type to JSON
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        //Attributes in the request body will be String and String
+        //Map will be turned into JSON
+        Map<String, String> requestBody = new HashMap<>();
+        requestBody.put("text", text);
+
+        //HttpEntity request will take the requestBody and headers from above
+        HttpEntity<Map<String, String>> request = new HttpEntity<>(requestBody, headers);
+
+        //Post the JSON request at the classifer URL
+        @SuppressWarnings("unchecked")
+        Map<String, Object> response = restTemplate.postForObject(classifierUrl, request, Map.class);
+        return response;
+    }
+
+    private Map<String, Object> emptyResult() {
         Map<String, Object> emptyResult = new HashMap<>();
         emptyResult.put("primary_tags", List.of());
         emptyResult.put("secondary_tags", List.of());
         return emptyResult;
     }
 
+    private void recordLatency(long nanos) {
+        totalLatencyNanos.addAndGet(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    //Breaker state, call outcomes and latency for the metrics endpoint
+    public Map<String, Object> getClientMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("breakerState", circuitBreaker.getState());
+        metrics.put("consecutiveFailures", circuitBreaker.getConsecutiveFailures());
+        metrics.put("timesOpened", circuitBreaker.getTimesOpened());
+        metrics.put("documents", documents.get());
+        metrics.put("sampledDocuments", sampledDocuments.get());
+        metrics.put("charsReceived", charsReceived.get());
+        metrics.put("charsSent", charsSent.get());
+        metrics.put("calls", calls.get());
+        metrics.put("successes", successes.get());
+        metrics.put("failures", failures.get());
+        metrics.put("shortCircuited", shortCircuited.get());
+        metrics.put("bulkheadRejections", bulkheadRejections.get());
+        metrics.put("inFlight", maxConcurrentCalls - bulkhead.availablePermits());
+
+        long completed = successes.get() + failures.get();
+        metrics.put("averageLatencyMs", completed > 0 ? totalLatencyNanos.get() / completed / 1_000_000.0 : 0);
+        metrics.put("maxLatencyMs", maxLatencyNanos.get() / 1_000_000.0);
+
+        PoolStats stats = connectionManager.getTotalStats();
+        metrics.put("leasedConnections", stats.getLeased());
+        metrics.put("availableConnections", stats.getAvailable());
+        metrics.put("pendingConnections", stats.getPending());
+        return metrics;
+    }
+
     //Function to turn JSON object of tags to a single string that contains all the tags separated by commas
     public String getTagString(Map<String, Object> classificationResult) {
         StringBuilder tagBuilder = new StringBuilder();
@@ -127,6 +327,20 @@ public class DocumentTaggerService {
         }
     }
 
+    //Function to read a stored classification JSON string back into a result map
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> parseTagJson(String tagJson) {
+        if (tagJson == null || tagJson.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(tagJson, Map.class);
+        } catch (Exception e) {
+            System.err.println("Error reading tag JSON: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
     public boolean isAcademicDocument(Map<String, Object> classificationResult) {
         //Check document_type field if available
         if (classificationResult.containsKey("document_type")) {
@@ -141,8 +355,7 @@ public class DocumentTaggerService {
 
         //Check if any academic tags are present
         for (String tag : mainTags) {
-            if (List.of("math-science", "humanities", "computer",
-                    "business-studies", "arts", "assignment").contains(tag)) {
+            if (ACADEMIC_TAGS.contains(tag)) {
                 return true;
             }
         }
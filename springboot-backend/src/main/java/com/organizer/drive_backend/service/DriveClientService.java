@@ -0,0 +1,185 @@
+package com.organizer.drive_backend.service;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
+
+import jakarta.annotation.PreDestroy;
+
+//Single Drive client shared by every service
+//Keeps one pooled HTTP transport (TLS sessions and keep-alive survive between requests)
+//and refreshes the service account token in the background before it expires
+@Service
+public class DriveClientService {
+
+    //JSON factory from Google API to parse and generate JSON
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    //Path to Google service account credentials
+    private static final String SERVICE_ACCOUNT_KEY_PATH = getPathToGoogleCredentials();
+
+    @Value("${google.drive.pool.max-total:50}")
+    private int maxTotalConnections;
+
+    @Value("${google.drive.pool.max-per-route:20}")
+    private int maxConnectionsPerRoute;
+
+    //Idle connections are closed after this long so we don't reuse ones the server dropped
+    @Value("${google.drive.pool.idle-timeout-seconds:60}")
+    private int idleTimeoutSeconds;
+
+    //Refresh the token when it has less than this many seconds left
+    @Value("${google.drive.token.refresh-before-expiry-seconds:300}")
+    private long refreshBeforeExpirySeconds;
+
+    private volatile Drive drive;
+    private GoogleCredential credential;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private ScheduledExecutorService tokenRefresher;
+
+    private final AtomicLong tokenRefreshes = new AtomicLong();
+    private final AtomicLong tokenRefreshFailures = new AtomicLong();
+    private volatile LocalDateTime lastTokenRefresh;
+
+    //Method to find filesystem path for credentials file
+    //Take current directory as base and then append the filename
+    private static String getPathToGoogleCredentials() {
+        //Get current directory of application
+        String currentDirectory = System.getProperty("user.dir");
+
+        //Join current directory with filename
+        Path filePath = Paths.get(currentDirectory, "cred.json");
+
+        //Return filepath as a string
+        return filePath.toString();
+    }
+
+    //Return the shared Drive client, building it on first use
+    //Built lazily so the application still starts without cred.json
+    public Drive getDrive() throws IOException {
+        Drive current = drive;
+        if (current == null) {
+            synchronized (this) {
+                current = drive;
+                if (current == null) {
+                    current = createDriveService();
+                    drive = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Drive createDriveService() throws IOException {
+        //Load Google credentials from the credential file
+        //Scoped to only access Google Drive
+        try (FileInputStream credentialStream = new FileInputStream(SERVICE_ACCOUNT_KEY_PATH)) {
+            credential = GoogleCredential.fromStream(credentialStream).createScoped(Collections.singleton(DriveScopes.DRIVE));
+        }
+
+        //Pooled connections shared by every Drive call
+        connectionManager = new PoolingHttpClientConnectionManager(idleTimeoutSeconds, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        HttpClient httpClient = ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+
+        //Fetch the first token now so the first request doesn't pay for it
+        refreshToken();
+
+        tokenRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "drive-token-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tokenRefresher.scheduleWithFixedDelay(this::refreshTokenIfExpiring, 1, 1, TimeUnit.MINUTES);
+
+        System.out.println("Shared Drive client created with a pool of " + maxTotalConnections + " connections");
+
+        //Create the Drive instance with the pooled transport, JSON Factory for parsing, Google Credentials
+        return new Drive.Builder(
+                new ApacheHttpTransport(httpClient),
+                JSON_FACTORY,
+                credential)
+                .build();
+    }
+
+    private void refreshTokenIfExpiring() {
+        Long expiresIn = credential.getExpiresInSeconds();
+        if (expiresIn == null || expiresIn < refreshBeforeExpirySeconds) {
+            refreshToken();
+        }
+    }
+
+    private void refreshToken() {
+        try {
+            if (credential.refreshToken()) {
+                tokenRefreshes.incrementAndGet();
+                lastTokenRefresh = LocalDateTime.now();
+            } else {
+                tokenRefreshFailures.incrementAndGet();
+            }
+        } catch (IOException e) {
+            //Requests will still refresh the token themselves if this keeps failing
+            tokenRefreshFailures.incrementAndGet();
+            System.err.println("Error refreshing Drive token: " + e.getMessage());
+        }
+    }
+
+    //Connection pool and token numbers for the metrics endpoint
+    public Map<String, Object> getPoolMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("initialized", drive != null);
+
+        if (connectionManager != null) {
+            PoolStats stats = connectionManager.getTotalStats();
+            metrics.put("leasedConnections", stats.getLeased());
+            metrics.put("availableConnections", stats.getAvailable());
+            metrics.put("pendingRequests", stats.getPending());
+            metrics.put("maxConnections", stats.getMax());
+        }
+
+        metrics.put("tokenRefreshes", tokenRefreshes.get());
+        metrics.put("tokenRefreshFailures", tokenRefreshFailures.get());
+        metrics.put("lastTokenRefresh", lastTokenRefresh != null ? lastTokenRefresh.toString() : null);
+        if (credential != null) {
+            metrics.put("tokenExpiresInSeconds", credential.getExpiresInSeconds());
+        }
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (tokenRefresher != null) {
+            tokenRefresher.shutdownNow();
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+        }
+    }
+}
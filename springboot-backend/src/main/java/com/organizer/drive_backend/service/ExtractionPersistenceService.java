@@ -0,0 +1,125 @@
+package com.organizer.drive_backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnitUtil;
+
+//Bulk persistence for ingestion
+//Writes extractions in chunks, one transaction per chunk, so Hibernate can send them as JDBC batches
+@Service
+public class ExtractionPersistenceService {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    @Autowired
+    private DocumentSearchService documentSearchService;
+
+    //Source items written per transaction, keep equal to hibernate.jdbc.batch_size
+    //so each table's rows of a chunk go out as one JDBC batch
+    @Value("${ingestion.persist.chunk-size:50}")
+    private int chunkSize;
+
+    //Builds the entities to save for one source item (e.g. an extraction and its job checkpoint)
+    //Called again for every attempt, so a retry never reuses instances persisted in a rolled back transaction
+    @FunctionalInterface
+    public interface RowSource {
+        List<?> build();
+    }
+
+    //Save the rows of every source in one transaction
+    public void saveAll(List<RowSource> sources) {
+        List<Object> entities = new ArrayList<>();
+        for (RowSource source : sources) {
+            entities.addAll(source.build());
+        }
+
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Object entity : entities) {
+                //New rows are inserted, re-processed files overwrite their existing row
+                if (persistenceUnitUtil.getIdentifier(entity) == null) {
+                    entityManager.persist(entity);
+                } else {
+                    entityManager.merge(entity);
+                }
+            }
+            entityManager.flush();
+            //Don't keep every saved entity in the persistence context
+            entityManager.clear();
+        });
+
+        //Committed, so the tag and search indexes can show the new rows
+        //A failed reprocess leaves the row without text, so it can't match searches anymore
+        for (Object entity : entities) {
+            if (entity instanceof DocumentExtraction extraction) {
+                tagIndexService.update(extraction);
+                if ("Success".equals(extraction.getStatus()) && extraction.getText() != null) {
+                    documentSearchService.index(extraction.getFileId(), extraction.getText().decompress());
+                } else {
+                    documentSearchService.delete(extraction.getFileId());
+                }
+            }
+        }
+    }
+
+    //Collects extractions from pipeline workers and writes them a chunk at a time
+    public BulkWriter openWriter() {
+        return new BulkWriter();
+    }
+
+    public class BulkWriter implements AutoCloseable {
+        private final List<RowSource> buffer = new ArrayList<>();
+
+        //The rows of one source always end up in the same transaction
+        public synchronized void add(RowSource source) {
+            buffer.add(source);
+            if (buffer.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        public synchronized void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<RowSource> chunk = new ArrayList<>(buffer);
+            buffer.clear();
+            try {
+                saveAll(chunk);
+            } catch (RuntimeException e) {
+                //One bad row rolls back the whole chunk, retry source by source with freshly built rows so the others still get saved
+                System.err.println("Error saving extraction chunk, retrying rows one by one: " + e.getMessage());
+                for (RowSource source : chunk) {
+                    try {
+                        saveAll(List.of(source));
+                    } catch (RuntimeException rowError) {
+                        System.err.println("Error saving rows: " + rowError.getMessage());
+                    }
+                }
+            }
+        }
+
+        //Write whatever is left in the buffer
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
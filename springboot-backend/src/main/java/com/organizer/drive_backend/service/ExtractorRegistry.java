@@ -0,0 +1,50 @@
+package com.organizer.drive_backend.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.organizer.drive_backend.extraction.DocumentSource;
+import com.organizer.drive_backend.extraction.TextExtractor;
+
+//Picks the extractor for a document from its file signature instead of the content type the client sent
+//Every TextExtractor bean is registered, a new format only needs a new bean
+@Service
+public class ExtractorRegistry {
+    //Bytes read to recognise a format, PDF allows its header anywhere in the first 1024
+    private static final int HEADER_LENGTH = 1024;
+
+    private final Map<String, TextExtractor> extractorsByMimeType = new LinkedHashMap<>();
+
+    @Autowired
+    public ExtractorRegistry(List<TextExtractor> extractors) {
+        for (TextExtractor extractor : extractors) {
+            extractorsByMimeType.put(extractor.mimeType(), extractor);
+        }
+    }
+
+    //Extractor whose signature matches the document, the declared type is only used to report mismatches
+    //Throws IllegalArgumentException when no extractor recognises the bytes
+    public TextExtractor find(DocumentSource source, String declaredContentType) throws IOException {
+        byte[] header = source.readHeader(HEADER_LENGTH);
+
+        for (TextExtractor extractor : extractorsByMimeType.values()) {
+            if (extractor.matches(header)) {
+                if (!extractor.mimeType().equals(declaredContentType)) {
+                    System.out.println("Declared type " + declaredContentType + " of " + source.name()
+                            + " doesn't match its content, extracting as " + extractor.mimeType());
+                }
+                return extractor;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported file type: " + declaredContentType);
+    }
+
+    public boolean supports(String mimeType) {
+        return extractorsByMimeType.containsKey(mimeType);
+    }
+}
@@ -0,0 +1,249 @@
+package com.organizer.drive_backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+//Runs items through a chain of stages, each with its own worker threads
+//Stages are connected by bounded queues, so a slow stage blocks the ones before it (backpressure)
+//An item that fails in one stage skips the remaining stages and goes straight to the sink
+public class IngestionPipeline<T> {
+
+    //Work done by a single stage on a single item
+    @FunctionalInterface
+    public interface StageTask<T> {
+        void process(T item) throws Exception;
+    }
+
+    //Last stage, receives every item along with the failure (null if it succeeded)
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T item, Exception failure) throws Exception;
+    }
+
+    //Item travelling through the queues with the first failure it ran into
+    private static final class Envelope<T> {
+        private final T item;
+        private Exception failure;
+
+        private Envelope(T item) {
+            this.item = item;
+        }
+    }
+
+    //Marker put on a queue to tell a worker that no more items are coming
+    private static final Envelope<?> END = new Envelope<>(null);
+
+    private final String name;
+    private final int queueCapacity;
+    private final List<Stage> stages = new ArrayList<>();
+
+    public IngestionPipeline(String name, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+    }
+
+    //Add a stage that runs the task with the given number of workers
+    public IngestionPipeline<T> stage(String stageName, int concurrency, StageTask<T> task) {
+        stages.add(new Stage(stageName, concurrency, task, null));
+        return this;
+    }
+
+    //Add the final stage, which also sees items that failed earlier
+    public IngestionPipeline<T> sink(String stageName, int concurrency, Sink<T> sink) {
+        stages.add(new Stage(stageName, concurrency, null, sink));
+        return this;
+    }
+
+    //Push every item through the stages and wait for all of them to reach the sink
+    public List<StageStats> run(Iterable<T> items) throws InterruptedException {
+        return run(items, () -> false);
+    }
+
+    //Same as above, but stops feeding new items once stopRequested returns true
+    //Items already inside the pipeline still run to the sink
+    public List<StageStats> run(Iterable<T> items, BooleanSupplier stopRequested) throws InterruptedException {
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("Pipeline " + name + " has no stages");
+        }
+
+        //One queue in front of every stage
+        for (Stage stage : stages) {
+            stage.input = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        List<ExecutorService> executors = new ArrayList<>();
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                Stage stage = stages.get(i);
+                Stage next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+
+                AtomicInteger threadNumber = new AtomicInteger();
+                ExecutorService executor = Executors.newFixedThreadPool(stage.concurrency, runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + stage.name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executors.add(executor);
+
+                stage.runningWorkers.set(stage.concurrency);
+                for (int w = 0; w < stage.concurrency; w++) {
+                    executor.execute(() -> stage.work(next));
+                }
+            }
+
+            //Feed the first stage, blocking whenever its queue is full
+            Stage first = stages.get(0);
+            for (T item : items) {
+                if (stopRequested.getAsBoolean()) {
+                    break;
+                }
+                first.input.put(new Envelope<>(item));
+            }
+            first.endOfInput();
+
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+        }
+
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage stage : stages) {
+            stats.add(stage.snapshot());
+        }
+        return stats;
+    }
+
+    //One step of the pipeline with its queue, workers and counters
+    private final class Stage {
+        private final String name;
+        private final int concurrency;
+        private final StageTask<T> task;
+        private final Sink<T> sink;
+
+        private BlockingQueue<Envelope<T>> input;
+        private final AtomicInteger runningWorkers = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong();
+
+        private Stage(String name, int concurrency, StageTask<T> task, Sink<T> sink) {
+            this.name = name;
+            this.concurrency = Math.max(1, concurrency);
+            this.task = task;
+            this.sink = sink;
+        }
+
+        //Tell every worker of this stage to stop once the queue is drained
+        @SuppressWarnings("unchecked")
+        private void endOfInput() throws InterruptedException {
+            for (int i = 0; i < concurrency; i++) {
+                input.put((Envelope<T>) END);
+            }
+        }
+
+        private void work(Stage next) {
+            try {
+                while (true) {
+                    Envelope<T> envelope = input.take();
+                    if (envelope == END) {
+                        break;
+                    }
+
+                    //Items that already failed only run through the sink
+                    if (envelope.failure == null || sink != null) {
+                        long start = System.nanoTime();
+                        firstStart.accumulateAndGet(start, Math::min);
+                        try {
+                            if (sink != null) {
+                                sink.accept(envelope.item, envelope.failure);
+                            } else {
+                                task.process(envelope.item);
+                            }
+                            processed.incrementAndGet();
+                        } catch (Exception | Error e) {
+                            //Errors (e.g. StackOverflowError from a malformed PDF) must not kill the worker
+                            failed.incrementAndGet();
+                            if (envelope.failure == null) {
+                                envelope.failure = e instanceof Exception ? (Exception) e : new RuntimeException(e.toString(), e);
+                            }
+                            System.err.println("Pipeline stage " + name + " failed: " + e.getMessage());
+                        }
+                        long end = System.nanoTime();
+                        busyNanos.addAndGet(end - start);
+                        lastEnd.accumulateAndGet(end, Math::max);
+                    }
+
+                    if (next != null) {
+                        next.input.put(envelope);
+                    }
+                }
+
+                //Last worker out closes the next stage
+                if (runningWorkers.decrementAndGet() == 0 && next != null) {
+                    next.endOfInput();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private StageStats snapshot() {
+            long wallNanos = lastEnd.get() > firstStart.get() ? lastEnd.get() - firstStart.get() : 0;
+            return new StageStats(name, concurrency, processed.get(), failed.get(), busyNanos.get(), wallNanos);
+        }
+    }
+
+    //Throughput numbers for one stage of a finished run
+    public record StageStats(String stage, int concurrency, long processed, long failed, long busyNanos, long wallNanos) {
+
+        //Totals of two runs of the same stage, e.g. the pages of one batch job
+        public StageStats plus(StageStats other) {
+            return new StageStats(stage, concurrency, processed + other.processed, failed + other.failed,
+                    busyNanos + other.busyNanos, wallNanos + other.wallNanos);
+        }
+
+        //Items handled per second of wall time the stage was active
+        public double throughputPerSecond() {
+            if (wallNanos == 0) {
+                return 0;
+            }
+            return (processed + failed) / (wallNanos / 1_000_000_000.0);
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("stage", stage);
+            map.put("concurrency", concurrency);
+            map.put("processed", processed);
+            map.put("failed", failed);
+            map.put("busySeconds", busyNanos / 1_000_000_000.0);
+            map.put("wallSeconds", wallNanos / 1_000_000_000.0);
+            map.put("itemsPerSecond", throughputPerSecond());
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s x%d: %d ok, %d failed, %.2f items/s", stage, concurrency, processed, failed, throughputPerSecond());
+        }
+    }
+}
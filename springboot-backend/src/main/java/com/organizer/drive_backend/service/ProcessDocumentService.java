@@ -1,73 +1,238 @@
 package com.organizer.drive_backend.service;
 
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.hwpf.HWPFDocument;
-import org.apache.poi.hwpf.extractor.WordExtractor;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import com.organizer.drive_backend.extraction.BoundedWriter;
+import com.organizer.drive_backend.extraction.DocumentSource;
+import com.organizer.drive_backend.extraction.ExtractedText;
+import com.organizer.drive_backend.extraction.ExtractionRejectedException;
+import com.organizer.drive_backend.extraction.ExtractionScheduler;
+import com.organizer.drive_backend.extraction.ExtractionTimeoutException;
+import com.organizer.drive_backend.extraction.TextExtractor;
+import com.organizer.drive_backend.extraction.UploadSpool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ProcessDocumentService {
+    //Finds the extractor from the file signature
+    @Autowired
+    private ExtractorRegistry extractorRegistry;
+
+    //Time waiting for heap budget is not counted against the time budget
+    @Autowired
+    private ExtractionScheduler extractionScheduler;
+
+    //Most characters kept per document, the rest is dropped and the record is marked truncated
+    @Value("${extraction.max-chars:2000000}")
+    private long maxChars;
+
+    //Threads that run PDFBox/POI, separate from request threads and the batch pipeline
+    @Value("${extraction.worker.threads:4}")
+    private int workerThreads;
+
+    //Documents waiting for a worker before new ones are rejected
+    @Value("${extraction.worker.queue-capacity:100}")
+    private int workerQueueCapacity;
+
+    //Time one document may spend being extracted before it is abandoned
+    @Value("${extraction.timeout-ms:60000}")
+    private long timeoutMs;
+
+    //Longest a caller waits for one document in total, time queued for a worker or for heap budget included
+    //Stops callers piling up behind workers stuck in parsers that ignore interrupts
+    @Value("${extraction.deadline-ms:300000}")
+    private long deadlineMs;
+
+    private ThreadPoolExecutor extractionExecutor;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    @PostConstruct
+    public void startExtractionExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        extractionExecutor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "extraction-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stopExtractionExecutor() {
+        extractionExecutor.shutdownNow();
+    }
+
     //Method to extract text from files based on file type
     public String extractText(File file, String contentType) throws IOException {
-        //If type is pdf
-        if (contentType.equals("application/pdf")) {
-            return extractTextFromPdf(file);
+        return extract(file, contentType).text();
+    }
+
+    //Method to extract text from a streamed upload
+    public String extractText(UploadSpool spool, String contentType) throws IOException {
+        return extract(spool, contentType).text();
+    }
 
-        //If type is doc
-        } else if (contentType.equals("application/msword")) {
-            return extractTextFromDoc(file);
+    //Text of a file, cut off at extraction.max-chars
+    public ExtractedText extract(File file, String contentType) throws IOException {
+        return extract(DocumentSource.of(file), contentType);
+    }
 
-        //If type is docx
-        } else if (contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document")) {
-            return extractTextFromDocx(file);
-        }
-        else {
-            throw new IllegalArgumentException("Unsupported file type: " + contentType);
-        }
+    //Text of a streamed upload, cut off at extraction.max-chars
+    public ExtractedText extract(UploadSpool spool, String contentType) throws IOException {
+        return extract(DocumentSource.of(spool), contentType);
+    }
+
+    public ExtractedText extract(DocumentSource source, String contentType) throws IOException {
+        StringWriter text = new StringWriter();
+        boolean truncated = writeText(source, contentType, text);
+        return new ExtractedText(text.toString(), truncated);
+    }
+
+    //Stream the text of a file to out, at most extraction.max-chars characters
+    //Returns true if the document had more text than that
+    public boolean writeText(File file, String contentType, Writer out) throws IOException {
+        return writeText(DocumentSource.of(file), contentType, out);
     }
 
-    //Method to extract text from docx files
-    private String extractTextFromDocx(File file) throws IOException {
-        //Read bytes from file
-        //Create a XWPF object using the stream of bytes that were read
-        try (FileInputStream fis = new FileInputStream(file);
-            XWPFDocument document = new XWPFDocument(fis)) {
+    //Stream the text of an upload to out, read straight from memory when it wasn't spooled to disk
+    public boolean writeText(UploadSpool spool, String contentType, Writer out) throws IOException {
+        return writeText(DocumentSource.of(spool), contentType, out);
+    }
+
+    //The format is recognised from the document's first bytes, contentType is what the client declared
+    //Runs on the extraction workers, throws ExtractionTimeoutException when it takes longer than extraction.timeout-ms
+    public boolean writeText(DocumentSource source, String contentType, Writer out) throws IOException {
+        TextExtractor extractor = extractorRegistry.find(source, contentType);
+        BoundedWriter writer = new BoundedWriter(out, maxChars);
+        ExtractionTask task = new ExtractionTask(extractor, source, writer);
 
-            //Create an extractor to extract the text from the XWPF object
-            XWPFWordExtractor wordExtractor = new XWPFWordExtractor(document);
+        Future<?> future;
+        try {
+            future = extractionExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ExtractionRejectedException("Extraction queue is full, rejected " + source.name());
+        }
 
-            return wordExtractor.getText();
+        try {
+            awaitWithinBudget(task, future);
+            completed.incrementAndGet();
+        } catch (TimeoutException e) {
+            //Interrupting the worker makes the extractor give up at its next operator or write, a queued task never starts
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw new ExtractionTimeoutException("Extraction of " + source.name() + " " + e.getMessage());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting " + source.name(), e);
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Extraction of " + source.name() + " failed: " + cause, cause);
         }
+
+        writer.flush();
+        return writer.isTruncated() || task.truncated;
     }
 
-    private String extractTextFromDoc(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file);
-            HWPFDocument document = new HWPFDocument(fis)) {
-            WordExtractor wordExtractor = new WordExtractor(document);
+    //Wait for the task, only counting the time it actually spends extracting against the document's budget
+    //Time queued for a worker or waiting for heap budget is not part of it, but does count towards the overall deadline
+    private void awaitWithinBudget(ExtractionTask task, Future<?> future) throws InterruptedException, ExecutionException, TimeoutException {
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long checkNanos = Math.min(budgetNanos, TimeUnit.SECONDS.toNanos(1));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        long spentNanos = 0;
 
-            return wordExtractor.getText();
+        while (true) {
+            long waitNanos = Math.min(checkNanos, Math.min(budgetNanos - spentNanos, deadline - System.nanoTime()));
+            long start = System.nanoTime();
+            try {
+                future.get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                return;
+            } catch (TimeoutException e) {
+                Thread worker = task.worker;
+                if (worker != null && !extractionScheduler.isWaiting(worker)) {
+                    spentNanos += System.nanoTime() - start;
+                }
+                if (spentNanos >= budgetNanos) {
+                    throw new TimeoutException("took longer than " + timeoutMs + " ms");
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new TimeoutException("did not finish within " + deadlineMs + " ms, including time waiting for a worker");
+                }
+            }
         }
     }
 
-    private String extractTextFromPdf(File file) throws IOException {
-        //Load PDF file using Loader class
-        try (PDDocument document = Loader.loadPDF(file)) {
-            //Create a text stripper (similar to extractor for doc/docx)
-            PDFTextStripper stripper = new PDFTextStripper();
+    //Worker pool and time budget numbers for the metrics endpoint
+    public Map<String, Object> getWorkerMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", extractionExecutor.getMaximumPoolSize());
+        metrics.put("active", extractionExecutor.getActiveCount());
+        metrics.put("queued", extractionExecutor.getQueue().size());
+        metrics.put("timeoutMs", timeoutMs);
+        metrics.put("completed", completed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("timedOut", timedOut.get());
+        return metrics;
+    }
+
+    //One document on an extraction worker, remembers the thread so the caller can see what it is doing
+    private static final class ExtractionTask implements Callable<Void> {
+        private final TextExtractor extractor;
+        private final DocumentSource source;
+        private final BoundedWriter writer;
+        private volatile Thread worker;
+        //Set when the extractor stopped at a limit of its own, e.g. a PDF page range cut at the limit
+        private volatile boolean truncated;
+
+        private ExtractionTask(TextExtractor extractor, DocumentSource source, BoundedWriter writer) {
+            this.extractor = extractor;
+            this.source = source;
+            this.writer = writer;
+        }
 
-            //Strip text from entire document
-            stripper.setStartPage(1);
-            stripper.setEndPage(document.getNumberOfPages());
-            return stripper.getText(document);
+        @Override
+        public Void call() throws IOException {
+            worker = Thread.currentThread();
+            try {
+                extractor.writeText(source, writer);
+            } catch (BoundedWriter.LimitReachedException e) {
+                //Expected for very long documents, the text up to the limit is kept
+                truncated = true;
+            } finally {
+                worker = null;
+            }
+            return null;
         }
     }
 }
@@ -0,0 +1,173 @@
+package com.organizer.drive_backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Boolean expression over tags, e.g. "research AND (legal OR compliance) AND NOT draft"
+//AND, OR and NOT can also be written &, | and !, AND may be left out: "legal compliance" is "legal AND compliance"
+//NOT binds tightest, then AND, then OR. Tags with other characters can be quoted: "my tag"
+public sealed interface TagExpression {
+
+    record Tag(String name) implements TagExpression {
+    }
+
+    record And(List<TagExpression> operands) implements TagExpression {
+    }
+
+    record Or(List<TagExpression> operands) implements TagExpression {
+    }
+
+    record Not(TagExpression operand) implements TagExpression {
+    }
+
+    //Throws IllegalArgumentException with the position of the problem when the expression is malformed
+    static TagExpression parse(String expression) {
+        Parser parser = new Parser(expression);
+        TagExpression parsed = parser.parseOr();
+        parser.skipSpaces();
+        if (parser.position < expression.length()) {
+            throw parser.error("unexpected '" + expression.charAt(parser.position) + "'");
+        }
+        return parsed;
+    }
+
+    //Recursive descent over the raw string, one method per precedence level
+    final class Parser {
+        //Deeper NOTs and brackets are rejected instead of overflowing the stack while parsing or evaluating
+        private static final int MAX_DEPTH = 64;
+
+        private final String input;
+        private int position;
+        private int depth;
+
+        private Parser(String input) {
+            this.input = input;
+        }
+
+        private TagExpression parseOr() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (acceptOperator("OR", '|')) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private TagExpression parseAnd() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(parseNot());
+            while (true) {
+                if (acceptOperator("AND", '&')) {
+                    operands.add(parseNot());
+                } else if (startsOperand()) {
+                    operands.add(parseNot());
+                } else {
+                    break;
+                }
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private TagExpression parseNot() {
+            if (acceptOperator("NOT", '!')) {
+                enter();
+                TagExpression operand = parseNot();
+                depth--;
+                return new Not(operand);
+            }
+            return parsePrimary();
+        }
+
+        private TagExpression parsePrimary() {
+            skipSpaces();
+            if (position >= input.length()) {
+                throw error("expected a tag");
+            }
+
+            char c = input.charAt(position);
+            if (c == '(') {
+                position++;
+                enter();
+                TagExpression inner = parseOr();
+                depth--;
+                skipSpaces();
+                if (position >= input.length() || input.charAt(position) != ')') {
+                    throw error("expected ')'");
+                }
+                position++;
+                return inner;
+            }
+            if (c == '"') {
+                int end = input.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw error("unterminated quote");
+                }
+                String name = input.substring(position + 1, end);
+                position = end + 1;
+                return new Tag(name);
+            }
+            if (!isTagChar(c)) {
+                throw error("expected a tag");
+            }
+
+            int start = position;
+            while (position < input.length() && isTagChar(input.charAt(position))) {
+                position++;
+            }
+            return new Tag(input.substring(start, position));
+        }
+
+        //True when the next token is a tag, '(' or NOT, i.e. an AND without the keyword
+        private boolean startsOperand() {
+            skipSpaces();
+            if (position >= input.length()) {
+                return false;
+            }
+            char c = input.charAt(position);
+            if (c == '(' || c == '"' || c == '!') {
+                return true;
+            }
+            return isTagChar(c) && !peekWord("OR") && !peekWord("AND");
+        }
+
+        private boolean acceptOperator(String word, char symbol) {
+            skipSpaces();
+            if (position < input.length() && input.charAt(position) == symbol) {
+                position++;
+                return true;
+            }
+            if (peekWord(word)) {
+                position += word.length();
+                return true;
+            }
+            return false;
+        }
+
+        //Keyword in any case, not followed by more tag characters (so "order" is a tag, not OR)
+        private boolean peekWord(String word) {
+            int end = position + word.length();
+            return input.regionMatches(true, position, word, 0, word.length())
+                    && (end == input.length() || !isTagChar(input.charAt(end)));
+        }
+
+        private void skipSpaces() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isTagChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.';
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw error("expression nested too deeply");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid tag expression at position " + position + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.organizer.drive_backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.repository.DocumentRepository;
+
+//In-memory tag index: for every tag, a compressed (Roaring) bitmap of the IDs of the documents that have it
+//Answers AND/OR/NOT tag expressions with bitmap operations instead of database queries
+//Loaded from document_tags once the application has started, then kept up to date by the code that saves documents
+@Service
+public class TagIndexService {
+    //Document IDs read per query while loading
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Guarded by lock
+    private Map<String, Roaring64NavigableMap> documentsByTag = new HashMap<>();
+    private Roaring64NavigableMap allDocuments = new Roaring64NavigableMap();
+    //Documents whose tags column isn't null, the ones that can be professional
+    private Roaring64NavigableMap classifiedDocuments = new Roaring64NavigableMap();
+    private boolean loading;
+    //Changes made while loading, replayed onto the loaded index so none are lost
+    private final List<Runnable> changesWhileLoading = new ArrayList<>();
+
+    private volatile boolean ready;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong totalQueryNanos = new AtomicLong();
+    private volatile long loadMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread loader = new Thread(this::loadFromDatabase, "tag-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void loadFromDatabase() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            changesWhileLoading.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Map<String, Roaring64NavigableMap> loadedByTag = new HashMap<>();
+            Roaring64NavigableMap loadedAll = new Roaring64NavigableMap();
+            Roaring64NavigableMap loadedClassified = new Roaring64NavigableMap();
+
+            long afterId = 0;
+            while (true) {
+                List<Object[]> documents = documentRepository.findIdsAndTagsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                if (documents.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = new ArrayList<>(documents.size());
+                for (Object[] row : documents) {
+                    long id = (Long) row[0];
+                    loadedAll.addLong(id);
+                    if (row[1] != null) {
+                        loadedClassified.addLong(id);
+                    }
+                    ids.add(id);
+                    afterId = id;
+                }
+                for (Object[] row : documentRepository.findTagRowsByDocumentIdIn(ids)) {
+                    loadedByTag.computeIfAbsent((String) row[1], tag -> new Roaring64NavigableMap())
+                            .addLong(((Number) row[0]).longValue());
+                }
+            }
+            loadedByTag.values().forEach(Roaring64NavigableMap::runOptimize);
+
+            lock.writeLock().lock();
+            try {
+                documentsByTag = loadedByTag;
+                allDocuments = loadedAll;
+                classifiedDocuments = loadedClassified;
+                changesWhileLoading.forEach(Runnable::run);
+                changesWhileLoading.clear();
+                loading = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            loadMs = System.currentTimeMillis() - start;
+            ready = true;
+            System.out.println("Loaded tag index: " + loadedAll.getLongCardinality() + " documents, "
+                    + loadedByTag.size() + " tags in " + loadMs + " ms");
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                changesWhileLoading.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.err.println("Could not load tag index, tag searches will use the database: " + e.getMessage());
+        }
+    }
+
+    //Record a saved document's tags, replacing whatever the index had for it
+    public void update(DocumentExtraction document) {
+        if (document.getId() == null) {
+            return;
+        }
+        long id = document.getId();
+        boolean classified = document.getTags() != null;
+        List<String> tags = new ArrayList<>(DocumentExtraction.splitTags(document.getTags()));
+        apply(() -> {
+            removeFromTags(id);
+            allDocuments.addLong(id);
+            if (classified) {
+                classifiedDocuments.addLong(id);
+            } else {
+                classifiedDocuments.removeLong(id);
+            }
+            for (String tag : tags) {
+                documentsByTag.computeIfAbsent(tag, t -> new Roaring64NavigableMap()).addLong(id);
+            }
+        });
+    }
+
+    public void remove(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        long id = documentId;
+        apply(() -> {
+            removeFromTags(id);
+            allDocuments.removeLong(id);
+            classifiedDocuments.removeLong(id);
+        });
+    }
+
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (loading) {
+                changesWhileLoading.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //A document only has a few tags but the index doesn't keep them per document, so check every tag
+    private void removeFromTags(long id) {
+        documentsByTag.values().removeIf(documents -> {
+            documents.removeLong(id);
+            return documents.isEmpty();
+        });
+    }
+
+    //IDs of the documents matching the expression, in ascending order
+    public Roaring64NavigableMap evaluate(TagExpression expression) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return evaluateLocked(expression);
+        } finally {
+            lock.readLock().unlock();
+            queries.incrementAndGet();
+            totalQueryNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    //Documents with at least one academic tag
+    public Roaring64NavigableMap academic() {
+        return evaluate(academicExpression());
+    }
+
+    //Classified documents without an academic tag
+    public Roaring64NavigableMap professional() {
+        lock.readLock().lock();
+        try {
+            Roaring64NavigableMap result = copy(classifiedDocuments);
+            result.andNot(evaluateLocked(academicExpression()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static TagExpression academicExpression() {
+        List<TagExpression> tags = new ArrayList<>();
+        DocumentTaggerService.ACADEMIC_TAGS.forEach(tag -> tags.add(new TagExpression.Tag(tag)));
+        return new TagExpression.Or(tags);
+    }
+
+    //Every result is a new bitmap, the ones in the index are never handed out or modified
+    private Roaring64NavigableMap evaluateLocked(TagExpression expression) {
+        if (expression instanceof TagExpression.Tag tag) {
+            Roaring64NavigableMap documents = documentsByTag.get(tag.name());
+            return documents != null ? copy(documents) : new Roaring64NavigableMap();
+        }
+        if (expression instanceof TagExpression.And and) {
+            Roaring64NavigableMap result = null;
+            for (TagExpression operand : and.operands()) {
+                Roaring64NavigableMap documents = evaluateLocked(operand);
+                if (result == null) {
+                    result = documents;
+                } else {
+                    result.and(documents);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        }
+        if (expression instanceof TagExpression.Or or) {
+            Roaring64NavigableMap result = new Roaring64NavigableMap();
+            for (TagExpression operand : or.operands()) {
+                result.or(evaluateLocked(operand));
+            }
+            return result;
+        }
+        TagExpression.Not not = (TagExpression.Not) expression;
+        Roaring64NavigableMap result = copy(allDocuments);
+        result.andNot(evaluateLocked(not.operand()));
+        return result;
+    }
+
+    private static Roaring64NavigableMap copy(Roaring64NavigableMap bitmap) {
+        Roaring64NavigableMap copy = new Roaring64NavigableMap();
+        copy.or(bitmap);
+        return copy;
+    }
+
+    //Index size and query counts for the metrics endpoint
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            metrics.put("documents", allDocuments.getLongCardinality());
+            metrics.put("tags", documentsByTag.size());
+            long bytes = allDocuments.serializedSizeInBytes() + classifiedDocuments.serializedSizeInBytes();
+            for (Roaring64NavigableMap documents : documentsByTag.values()) {
+                bytes += documents.serializedSizeInBytes();
+            }
+            metrics.put("bitmapBytes", bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("loadMs", loadMs);
+        long count = queries.get();
+        metrics.put("queries", count);
+        metrics.put("averageQueryMicros", count > 0 ? totalQueryNanos.get() / count / 1000.0 : 0);
+        return metrics;
+    }
+}
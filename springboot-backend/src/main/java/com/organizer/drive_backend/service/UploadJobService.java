@@ -0,0 +1,194 @@
+package com.organizer.drive_backend.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.organizer.drive_backend.model.Response;
+import com.organizer.drive_backend.model.UploadJob;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+//Runs uploads on a background executor so /upload can answer straight away with a job ID
+//Jobs live in memory, progress is pushed to Server-Sent Events subscribers
+@Service
+public class UploadJobService {
+    @Autowired
+    private UploadService uploadService;
+
+    @Value("${upload.async.workers:4}")
+    private int workers;
+
+    //Jobs waiting for a worker before new ones are rejected
+    @Value("${upload.async.queue-capacity:100}")
+    private int queueCapacity;
+
+    //How long finished jobs can still be looked up
+    @Value("${upload.async.retention-minutes:60}")
+    private long retentionMinutes;
+
+    //SSE connections are closed after this long even if the job hasn't finished
+    @Value("${upload.async.sse-timeout-ms:300000}")
+    private long sseTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService cleaner;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void startExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "upload-job-" + threadNumber.incrementAndGet()));
+
+        //Finished jobs are dropped on a timer, so they don't pile up while no new uploads arrive
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-job-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::removeExpiredJobs, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        cleaner.shutdownNow();
+        executor.shutdown();
+    }
+
+    //Queue an upload of a stored file and the SHA-256 of its bytes, the file is deleted once the job is done
+    //Throws RejectedExecutionException when the queue is full
+    public UploadJob submit(File storedFile, String contentHash, String contentType, String originalFilename, String firebaseUID) {
+        UploadJob job = new UploadJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setFileName(originalFilename);
+        job.setFirebaseUID(firebaseUID);
+        job.setStatus(UploadJob.Status.QUEUED);
+        job.setProgress("Queued");
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        jobs.put(job.getJobId(), job);
+
+        try {
+            executor.execute(() -> run(job, storedFile, contentHash, contentType, originalFilename, firebaseUID));
+        } catch (RuntimeException e) {
+            jobs.remove(job.getJobId());
+            throw e;
+        }
+        return job;
+    }
+
+    //Return the job if it exists and belongs to the user
+    public UploadJob getJob(String jobId, String firebaseUID) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null || !job.getFirebaseUID().equals(firebaseUID)) {
+            return null;
+        }
+        return job;
+    }
+
+    //Open an SSE stream that receives "progress" events and a final "complete" event
+    public SseEmitter subscribe(UploadJob job) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+
+        //Send the current state right away, under the job lock so the job can't finish in between
+        synchronized (job) {
+            send(emitter, job);
+            //A finished job sends no more events, so the emitter is never registered
+            if (job.isFinished()) {
+                emitter.complete();
+                return emitter;
+            }
+
+            List<SseEmitter> jobSubscribers = subscribers.computeIfAbsent(job.getJobId(), id -> new CopyOnWriteArrayList<>());
+            jobSubscribers.add(emitter);
+            emitter.onCompletion(() -> jobSubscribers.remove(emitter));
+            emitter.onTimeout(() -> jobSubscribers.remove(emitter));
+        }
+        return emitter;
+    }
+
+    private void run(UploadJob job, File storedFile, String contentHash, String contentType, String originalFilename, String firebaseUID) {
+        try {
+            update(job, UploadJob.Status.PROCESSING, "Processing", null);
+
+            Response response = uploadService.uploadFileToDrive(storedFile, contentHash, contentType, originalFilename, firebaseUID,
+                    step -> update(job, UploadJob.Status.PROCESSING, step, null));
+
+            UploadJob.Status status = response.getStatus() == 200 ? UploadJob.Status.COMPLETED : UploadJob.Status.FAILED;
+            update(job, status, status == UploadJob.Status.COMPLETED ? "Done" : "Failed", response);
+        } catch (Exception e) {
+            System.err.println("Upload job " + job.getJobId() + " failed: " + e.getMessage());
+            Response response = new Response();
+            response.setStatus(500);
+            response.setMessage(e.getMessage());
+            update(job, UploadJob.Status.FAILED, "Failed", response);
+        } finally {
+            if (storedFile.exists() && !storedFile.delete()) {
+                System.err.println("Failed to delete temporary file: " + storedFile.getAbsolutePath());
+            }
+        }
+    }
+
+    //Change the job state and push it to everyone listening
+    private void update(UploadJob job, UploadJob.Status status, String progress, Response result) {
+        synchronized (job) {
+            job.setStatus(status);
+            job.setProgress(progress);
+            job.setResult(result);
+            job.setUpdatedAt(LocalDateTime.now());
+
+            for (SseEmitter emitter : subscribers.getOrDefault(job.getJobId(), List.of())) {
+                send(emitter, job);
+                if (job.isFinished()) {
+                    emitter.complete();
+                }
+            }
+            if (job.isFinished()) {
+                subscribers.remove(job.getJobId());
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, UploadJob job) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(job.isFinished() ? "complete" : "progress")
+                    .data(job));
+        } catch (IOException | IllegalStateException e) {
+            //Client went away, stop sending to it
+            emitter.completeWithError(e);
+        }
+    }
+
+    //Forget finished jobs once their retention time has passed
+    private void removeExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.isFinished() && job.getUpdatedAt().isBefore(cutoff);
+            }
+        });
+        subscribers.keySet().retainAll(jobs.keySet());
+    }
+}
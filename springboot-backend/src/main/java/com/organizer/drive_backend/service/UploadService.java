@@ -1,31 +1,38 @@
 package com.organizer.drive_backend.service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.security.GeneralSecurityException;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.FileContent;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
-import com.google.api.services.drive.model.FileList;
+import com.organizer.drive_backend.extraction.ExtractedText;
+import com.organizer.drive_backend.extraction.ExtractionTimeoutException;
+import com.organizer.drive_backend.extraction.UploadSpool;
 import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentText;
 import com.organizer.drive_backend.model.Response;
 import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.repository.DocumentTextRepository;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class UploadService {
@@ -38,182 +45,354 @@ public class UploadService {
     @Autowired
     private DocumentRepository documentRepository;
 
-    //JSON factory from Google API to parse and generate JSON
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
 
-    //Path to Google service account credentials
-    private static final String SERVICE_ACCOUNT_KEY_PATH = getPathToGoogleCredentials();
+    @Autowired
+    private DriveClientService driveClientService;
 
-    //ID of folder where files are uploaded
-    @Value("${google.drive.folder.id}")
-    private String folderId;
+    @Autowired
+    private UserFolderService userFolderService;
 
-    //Method to find filesystem path for credentials file
-    //Take current directory as base and then append the filename
-    private static String getPathToGoogleCredentials() {
-        //Get current directory of application
-        String currentDirectory = System.getProperty("user.dir");
+    @Autowired
+    private DocumentSearchService documentSearchService;
 
-        //Join current directory with filename
-        Path filePath = Paths.get(currentDirectory, "cred.json");
+    @Autowired
+    private TagIndexService tagIndexService;
 
-        //Return filepath as a string
-        return filePath.toString();
-    };
+    //Size of the pipe between the request thread and the Drive upload thread
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
-    //Method to upload files to drive and create folder
-    public Response uploadFileToDrive(File file, String contentType, String originalFilename, String firebaseUID) throws GeneralSecurityException, IOException {
-        //Response object to store result of the upload operation
-        Response response = new Response();
+    //Streamed uploads up to this size are kept in memory for extraction
+    @Value("${upload.stream.memory-threshold-bytes:8388608}")
+    private long memoryThreshold;
+
+    //Streamed uploads are rejected beyond this size
+    @Value("${upload.stream.max-bytes:104857600}")
+    private long maxStreamBytes;
 
-        //Text extraction and classification
-        String extractedText = null;
-        Map<String, Object> classificationResult = Map.of(); //Default empty map
-        String tagString = "";
-        String tagJson = "{}";
+    //Resumable upload chunk size, must be a multiple of 256 KB
+    @Value("${upload.stream.chunk-size-bytes:1048576}")
+    private int uploadChunkSize;
 
+    //Threads that push streamed uploads to Drive
+    private final ExecutorService streamUploadExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "drive-stream-upload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //Method to upload files to drive and create folder
+    //contentHash is the SHA-256 of the file, computed by the caller while the file was written
+    public Response uploadFileToDrive(File file, String contentHash, String contentType, String originalFilename, String firebaseUID) throws GeneralSecurityException, IOException {
+        return uploadFileToDrive(file, contentHash, contentType, originalFilename, firebaseUID, step -> {});
+    }
+
+    //Same as above, reporting each processing step to the listener (used by background upload jobs)
+    public Response uploadFileToDrive(File file, String contentHash, String contentType, String originalFilename, String firebaseUID,
+                                      Consumer<String> progressListener) throws GeneralSecurityException, IOException {
         try {
-            extractedText = documentProcessor.extractText(file, contentType);
-            System.out.println("Successfully extracted text, length: " + extractedText.length());
+            //Text extraction and classification, skipped when the same bytes were processed before
+            Classification classification = extractAndClassify(contentHash, () -> documentProcessor.extract(file, contentType), progressListener);
 
-            //Classify the document using our simplified tag structure
-            if (extractedText != null && !extractedText.isEmpty()) {
-                classificationResult = documentTaggerService.classifyDocument(extractedText);
-                tagString = documentTaggerService.getTagString(classificationResult);
-                tagJson = documentTaggerService.getTagJson(classificationResult);
+            progressListener.accept("Uploading to Drive");
 
-                System.out.println("Document classified with tags: " + tagString);
+            //Create a Google Drive instance
+            Drive drive = driveClientService.getDrive();
 
-                //Check if it's an academic document
-                boolean isAcademic = documentTaggerService.isAcademicDocument(classificationResult);
-                System.out.println("Document type: " + (isAcademic ? "academic" : "professional"));
+            //Create or get the user folder after authentication
+            String userFolderId = userFolderService.getOrCreateUserFolderId(drive, firebaseUID);
+
+            //Create a filecontent object with the document's content type (file type) and the file itself
+            FileContent mediaContent = new FileContent(contentType, file);
+
+            //Execute the upload request
+            com.google.api.services.drive.model.File uploadedFile = drive.files()
+                    .create(createFileMetadata(originalFilename, userFolderId), mediaContent)
+                    .setFields("id")
+                    .execute();
+
+            progressListener.accept("Saving");
+            return saveAndBuildResponse(uploadedFile.getId(), originalFilename, contentType, classification);
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    };
+
+    //Method to upload a document while it is still being received
+    //The body is read once: every chunk goes to a resumable Drive upload and to a spool used for text extraction
+    //The spool stays in memory up to upload.stream.memory-threshold-bytes and moves to a single temp file beyond that
+    public Response uploadStreamToDrive(InputStream body, String contentType, String originalFilename, String firebaseUID) throws IOException {
+        UploadSpool spool = new UploadSpool(memoryThreshold, getExtension(originalFilename));
+        PipedInputStream driveInput = new PipedInputStream(STREAM_BUFFER_SIZE);
+        Drive drive = null;
+        Future<com.google.api.services.drive.model.File> driveUpload = null;
+        boolean bodyComplete = false;
+
+        try {
+            drive = driveClientService.getDrive();
+            String userFolderId = userFolderService.getOrCreateUserFolderId(drive, firebaseUID);
+
+            //Drive reads its side of the pipe on a separate thread while we keep reading the request
+            PipedOutputStream driveOutput = new PipedOutputStream(driveInput);
+            Drive.Files.Create create = drive.files()
+                    .create(createFileMetadata(originalFilename, userFolderId), new InputStreamContent(contentType, driveInput))
+                    .setFields("id");
+            create.getMediaHttpUploader()
+                    .setDirectUploadEnabled(false)
+                    .setChunkSize(uploadChunkSize);
+            driveUpload = streamUploadExecutor.submit(() -> {
+                try {
+                    return create.execute();
+                } finally {
+                    driveInput.close();
+                }
+            });
+
+            //Tee every chunk of the request body to Drive and to the spool
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            try (spool) {
+                while ((read = body.read(buffer)) != -1) {
+                    if (spool.size() + read > maxStreamBytes) {
+                        throw new IOException("Upload is larger than " + maxStreamBytes + " bytes");
+                    }
+                    driveOutput.write(buffer, 0, read);
+                    spool.write(buffer, 0, read);
+                }
             }
+            //Closing the pipe is the end of file for Drive, so it only happens once the whole body was read
+            driveOutput.close();
+            bodyComplete = true;
+            System.out.println("Received " + spool.size() + " bytes for " + originalFilename
+                    + (spool.isInMemory() ? " (in memory)" : " (spooled to disk)"));
+
+            //Extract and classify while Drive finishes the last chunks
+            Classification classification = extractAndClassify(spool.getContentHash(), () -> documentProcessor.extract(spool, contentType), step -> {});
+
+            com.google.api.services.drive.model.File uploadedFile = driveUpload.get();
+            return saveAndBuildResponse(uploadedFile.getId(), originalFilename, contentType, classification);
         } catch (Exception e) {
-            System.err.println("Error extracting or classifying text: " + e.getMessage());
-            //Continue with upload even if text extraction fails
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+
+            //A write to a closed pipe usually means the Drive side failed first, report that error instead
+            if (driveUpload != null && driveUpload.isDone() && !(e instanceof ExecutionException)) {
+                try {
+                    driveUpload.get();
+                } catch (ExecutionException uploadFailure) {
+                    cause = uploadFailure.getCause();
+                } catch (Exception ignored) {
+                    //Keep the original error
+                }
+            }
+
+            if (bodyComplete) {
+                if (driveUpload != null) {
+                    driveUpload.cancel(true);
+                }
+                driveInput.close();
+            } else {
+                abortPartialUpload(drive, driveInput, driveUpload);
+            }
+
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return errorResponse(cause);
+        } finally {
+            spool.discard();
+        }
+    }
+
+    //Stop a streamed upload whose body was not read to the end, so a half-read body is never stored as a complete file
+    //The write end is never closed: closing the read end first makes Drive fail on a broken pipe instead of seeing end of file
+    private void abortPartialUpload(Drive drive, PipedInputStream driveInput,
+                                    Future<com.google.api.services.drive.model.File> driveUpload) throws IOException {
+        driveInput.close();
+        if (driveUpload == null || driveUpload.cancel(true)) {
+            return;
         }
 
+        //The upload had already finished, remove the truncated file it stored
+        String fileId;
         try {
-            //Create a Google Drive instance
-            Drive drive = createDriveService();
+            fileId = driveUpload.get().getId();
+        } catch (Exception e) {
+            //The upload failed, nothing was stored
+            return;
+        }
+        try {
+            drive.files().delete(fileId).execute();
+            System.err.println("Deleted incomplete streamed upload: " + fileId);
+        } catch (IOException e) {
+            System.err.println("Could not delete incomplete streamed upload " + fileId + ": " + e.getMessage());
+        }
+    }
 
-            //Create or get the user folder after authentication
-            String userFolderId = createOrGetUserFolder(drive, firebaseUID);
+    @FunctionalInterface
+    private interface TextSource {
+        ExtractedText extract() throws Exception;
+    }
 
-            //Create metadata for the file we are uploading
-            com.google.api.services.drive.model.File fileMetaData = new com.google.api.services.drive.model.File();
+    //Result of running text extraction and the classifier on one document
+    private static class Classification {
+        private String contentHash;
+        private String status = "Success";
+        private String extractedText;
+        private DocumentText reusedText;
+        private boolean textTruncated;
+        private Map<String, Object> classificationResult = Map.of(); //Default empty map
+        private String tagString = "";
+        private String tagJson = "{}";
+    }
 
-            //Set filename of the file on Google Drive to match our local filename
-            fileMetaData.setName(originalFilename);
+    private Classification extractAndClassify(String contentHash, TextSource textSource, Consumer<String> progressListener) {
+        Classification classification = new Classification();
+        classification.contentHash = contentHash;
+
+        //Same content was extracted and classified before, copy the results
+        DocumentExtraction known = documentRepository.findReusableExtraction(contentHash);
+        if (known != null) {
+            System.out.println("Reusing extraction of identical content from file: " + known.getFileId());
+            DocumentText knownText = documentTextRepository.findByDocumentId(known.getId());
+            classification.reusedText = knownText != null ? knownText.copy() : null;
+            classification.textTruncated = Boolean.TRUE.equals(known.getTextTruncated());
+            classification.tagString = known.getTags();
+            classification.tagJson = known.getTagClassification();
+            classification.classificationResult = documentTaggerService.parseTagJson(known.getTagClassification());
+            return classification;
+        }
 
-            //Set the parent folder where the file will reside
-            fileMetaData.setParents(Collections.singletonList(userFolderId));
+        try {
+            progressListener.accept("Extracting text");
+            ExtractedText extracted = textSource.extract();
+            classification.extractedText = extracted.text();
+            classification.textTruncated = extracted.truncated();
+            System.out.println("Successfully extracted text, length: " + classification.extractedText.length()
+                    + (classification.textTruncated ? " (truncated)" : ""));
 
-            //Create a filecontent object with the document's content type (file type) and the file itself
-            FileContent mediaContent = new FileContent(contentType, file);
+            //Classify the document using our simplified tag structure
+            if (classification.extractedText != null && !classification.extractedText.isEmpty()) {
+                progressListener.accept("Classifying");
+                classification.classificationResult = documentTaggerService.classifyDocument(classification.extractedText);
+                classification.tagString = documentTaggerService.getTagString(classification.classificationResult);
+                classification.tagJson = documentTaggerService.getTagJson(classification.classificationResult);
 
-            //Execute the upload request
-            com.google.api.services.drive.model.File uploadedFile = drive.files().create(fileMetaData, mediaContent).setFields("id").execute();
-
-            //Construct a url to match the file url in Google Drive
-            String fileUrl = "https://drive.google.com/file/d/" + uploadedFile.getId() + "/view";
-
-            //Print out the file url
-            System.out.println("Document URL: " + fileUrl);
-
-            //Store document information with classification in the database
-            DocumentExtraction extraction = new DocumentExtraction();
-            extraction.setFileName(originalFilename);
-            extraction.setFileId(uploadedFile.getId());
-            extraction.setMimeType(contentType);
-            extraction.setExtractedText(extractedText);
-            extraction.setExtractionTime(LocalDateTime.now());
-            extraction.setStatus("Success");
-            extraction.setTags(tagString);
-            extraction.setTagClassification(tagJson);
-            documentRepository.save(extraction);
-
-            //Set status for operation
-            response.setStatus(200);
-
-            //Set message for operation
-            response.setMessage("Document Successfully Uploaded to Drive");
-
-            //Set url for uploaded file
-            response.setUrl(fileUrl);
-            //Add classification results to response
-            response.setFileName(originalFilename);
-
-            //Convert tag string to list for frontend
-            List<String> tagsList = List.of(tagString.split(","));
-            if (tagString.isEmpty()) {
-                tagsList = List.of();
-            }
-            response.setTags(tagsList);
-
-            //Set document type
-            String documentType = classificationResult.containsKey("document_type") ?
-                    (String) classificationResult.get("document_type") : "professional";
-            response.setDocumentType(documentType);
-
-            //Get confidence from primary tag if available
-            if (classificationResult.containsKey("scores") && classificationResult.containsKey("primary_tags")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Double> scores = (Map<String, Double>) classificationResult.get("scores");
-                @SuppressWarnings("unchecked")
-                List<String> primaryTags = (List<String>) classificationResult.get("primary_tags");
-
-                if (!primaryTags.isEmpty() && scores.containsKey(primaryTags.get(0))) {
-                    response.setConfidence(scores.get(primaryTags.get(0)));
-                }
+                System.out.println("Document classified with tags: " + classification.tagString);
+
+                //Check if it's an academic document
+                boolean isAcademic = documentTaggerService.isAcademicDocument(classification.classificationResult);
+                System.out.println("Document type: " + (isAcademic ? "academic" : "professional"));
             }
+        } catch (ExtractionTimeoutException e) {
+            //Upload still goes ahead, the record shows the text was never extracted
+            System.err.println(e.getMessage());
+            classification.status = DocumentExtraction.STATUS_TIMED_OUT;
         } catch (Exception e) {
-            System.out.println(e.getMessage());
-            response.setStatus(500);
-            response.setMessage(e.getMessage());
+            System.err.println("Error extracting or classifying text: " + e.getMessage());
+            //Continue with upload even if text extraction fails
         }
-        return response;
-    };
 
-    private Drive createDriveService() throws GeneralSecurityException, IOException {
-        //Load Google credentials from the credential file
-        //Scoped to only access Google Drive
-        GoogleCredential credential = GoogleCredential.fromStream(new FileInputStream(SERVICE_ACCOUNT_KEY_PATH)).createScoped(Collections.singleton(DriveScopes.DRIVE));
-
-        //Create and return a new Drive instance with HTTP, JSON Factory for parsing, Google Credentials
-        return new Drive.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(),
-                JSON_FACTORY,
-                credential)
-                .build();
+        return classification;
     }
 
-    //Function to create a folder or get an already existing folder
-    private String createOrGetUserFolder(Drive drive, String firebaseUID) throws IOException {
-        String userFolderName = "user_" + firebaseUID;
+    //Create metadata for the file we are uploading
+    private com.google.api.services.drive.model.File createFileMetadata(String originalFilename, String userFolderId) {
+        com.google.api.services.drive.model.File fileMetaData = new com.google.api.services.drive.model.File();
+
+        //Set filename of the file on Google Drive to match our local filename
+        fileMetaData.setName(originalFilename);
 
-        //Query to check if user folder already exists in master folder
-        String query = "'" + folderId + "' in parents and name='" + userFolderName + "' and mimeType='application/vnd.google-apps.folder' and trashed=false";
+        //Set the parent folder where the file will reside
+        fileMetaData.setParents(Collections.singletonList(userFolderId));
 
-        //Use query to search for folders
-        FileList result = drive.files().list().setQ(query).setFields("files(id, name)").execute();
+        return fileMetaData;
+    }
 
-        //If folder exists, return the existing folders id
-        if (!result.getFiles().isEmpty()) {
-            String existingFolderId = result.getFiles().get(0).getId();
-            System.out.println("Using existing user folder: " + existingFolderId);
-            return existingFolderId;
+    private Response saveAndBuildResponse(String fileId, String originalFilename, String contentType, Classification classification) {
+        //Response object to store result of the upload operation
+        Response response = new Response();
+
+        //Construct a url to match the file url in Google Drive
+        String fileUrl = "https://drive.google.com/file/d/" + fileId + "/view";
+
+        //Print out the file url
+        System.out.println("Document URL: " + fileUrl);
+
+        //Store document information with classification in the database
+        DocumentExtraction extraction = new DocumentExtraction();
+        extraction.setFileName(originalFilename);
+        extraction.setFileId(fileId);
+        extraction.setMimeType(contentType);
+        extraction.setText(classification.reusedText != null ? classification.reusedText : DocumentText.of(classification.extractedText));
+        extraction.setTextTruncated(classification.textTruncated);
+        extraction.setContentHash(classification.contentHash);
+        extraction.setExtractionTime(LocalDateTime.now());
+        extraction.setStatus(classification.status);
+        extraction.setTags(classification.tagString);
+        extraction.setTagClassification(classification.tagJson);
+        documentRepository.save(extraction);
+        //save commits on its own (there is no surrounding transaction), the indexes only ever see stored rows
+        tagIndexService.update(extraction);
+        documentSearchService.index(fileId, classification.reusedText != null
+                ? classification.reusedText.decompress() : classification.extractedText);
+
+        //Set status for operation
+        response.setStatus(200);
+
+        //Set message for operation
+        response.setMessage("Document Successfully Uploaded to Drive");
+
+        //Set url for uploaded file
+        response.setUrl(fileUrl);
+        //Add classification results to response
+        response.setFileName(originalFilename);
+
+        //Convert tag string to list for frontend
+        String tagString = classification.tagString;
+        List<String> tagsList = List.of(tagString.split(","));
+        if (tagString.isEmpty()) {
+            tagsList = List.of();
+        }
+        response.setTags(tagsList);
+
+        //Set document type
+        Map<String, Object> classificationResult = classification.classificationResult;
+        String documentType = classificationResult.containsKey("document_type") ?
+                (String) classificationResult.get("document_type") : "professional";
+        response.setDocumentType(documentType);
+
+        //Get confidence from primary tag if available
+        if (classificationResult.containsKey("scores") && classificationResult.containsKey("primary_tags")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Double> scores = (Map<String, Double>) classificationResult.get("scores");
+            @SuppressWarnings("unchecked")
+            List<String> primaryTags = (List<String>) classificationResult.get("primary_tags");
+
+            if (!primaryTags.isEmpty() && scores.containsKey(primaryTags.get(0))) {
+                response.setConfidence(scores.get(primaryTags.get(0)));
+            }
         }
+        return response;
+    }
 
-        //Create a new folder
-        com.google.api.services.drive.model.File folderMetaData = new com.google.api.services.drive.model.File();
-        folderMetaData.setName(userFolderName);
-        folderMetaData.setMimeType("application/vnd.google-apps.folder");
-        folderMetaData.setParents(Collections.singletonList(folderId));
+    private Response errorResponse(Throwable e) {
+        System.out.println(e.getMessage());
+        Response response = new Response();
+        response.setStatus(500);
+        response.setMessage(e.getMessage());
+        return response;
+    }
 
-        com.google.api.services.drive.model.File createdFolder = drive.files().create(folderMetaData).setFields("id").execute();
-        System.out.println("Created new user folder: " + createdFolder.getId());
+    private String getExtension(String fileName) {
+        if (fileName != null && fileName.contains(".")) {
+            return fileName.substring(fileName.lastIndexOf("."));
+        }
+        return ".tmp";
+    }
 
-        return createdFolder.getId();
+    @PreDestroy
+    public void shutdown() {
+        streamUploadExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -1,62 +1,54 @@
 package com.organizer.drive_backend.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.FileList;
 import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.PagedResponse;
 import com.organizer.drive_backend.repository.DocumentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 public class UserFileService {
     @Autowired
     private DocumentRepository documentRepository;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
-    private static final String SERVICE_ACCOUNT_KEY_PATH = getPathToGoogleCredentials();
+    @Autowired
+    private DriveClientService driveClientService;
 
-    @Value("${google.drive.folder.id}")
-    private String folderId;
+    @Autowired
+    private UserFolderService userFolderService;
 
-    private static String getPathToGoogleCredentials() {
-        //Get current directory of application
-        String currentDirectory = System.getProperty("user.dir");
+    @Autowired
+    private DocumentSearchService documentSearchService;
 
-        //Join current directory with filename
-        Path filePath = Paths.get(currentDirectory, "cred.json");
+    @Autowired
+    private TagIndexService tagIndexService;
 
-        //Return filepath as a string
-        return filePath.toString();
-    };
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public List<Map<String, Object>> getUserFiles(String firebaseUID) throws GeneralSecurityException, IOException {
+    //One page of the user's files, newest first
+    //Drive does the paging: pageToken is Drive's nextPageToken from the previous page, passed through as is
+    public PagedResponse<Map<String, Object>> getUserFiles(String firebaseUID, String pageToken, int pageSize) throws GeneralSecurityException, IOException {
         List<Map<String, Object>> userFiles = new ArrayList<>();
+        String nextPageToken = null;
 
         try {
-            Drive drive = createDriveService();
+            Drive drive = driveClientService.getDrive();
 
-            String userFolderId = getUserFolderId(drive, firebaseUID);
+            String userFolderId = userFolderService.findUserFolderId(drive, firebaseUID);
 
             //If user doesn't have a folder
             if (userFolderId == null) {
-                return userFiles;
+                return new PagedResponse<>(userFiles, null);
             }
 
             //Query to search user folder for files
@@ -64,9 +56,13 @@ public class UserFileService {
             FileList result = drive.files().list()
                     .setQ(query)
                     //Only return these specific fields
-                    .setFields("files(id, name, createdTime, mimeType, size)")
-                    .setOrderBy("createdTime desc")
+                    .setFields("nextPageToken, files(id, name, createdTime, mimeType, size)")
+                    //Files created at the same time keep a fixed order across pages
+                    .setOrderBy("createdTime desc,name")
+                    .setPageSize(pageSize)
+                    .setPageToken(pageToken)
                     .execute();
+            nextPageToken = result.getNextPageToken();
 
             //For each file in the user's drive folder:
             //Create a map of the basic info
@@ -74,6 +70,10 @@ public class UserFileService {
             //Add tags if found
             //Mark if tags aren't found
             //Add to the final list of files
+            //Look up the database records for every listed file in a few batched queries
+            Map<String, DocumentExtraction> dbRecords = documentRepository.findAllByFileIds(
+                    result.getFiles().stream().map(com.google.api.services.drive.model.File::getId).collect(Collectors.toList()));
+
             for (com.google.api.services.drive.model.File driveFile : result.getFiles()) {
                 Map<String, Object> fileInfo = new HashMap<>();
 
@@ -90,7 +90,7 @@ public class UserFileService {
                     fileInfo.put("size", driveFile.getSize());
                 }
 
-                DocumentExtraction dbRecord = documentRepository.findByFileId(driveFile.getId());
+                DocumentExtraction dbRecord = dbRecords.get(driveFile.getId());
 
                 if (dbRecord != null) {
                     if (dbRecord.getTags() != null && !dbRecord.getTags().isEmpty()) {
@@ -123,51 +123,20 @@ public class UserFileService {
             System.err.println("Error retrieving user files: " + e.getMessage());
             throw e;
         }
-        return userFiles;
-    }
-
-    private String getUserFolderId(Drive drive, String firebaseUID) throws IOException {
-        String userFolderName = "user_" + firebaseUID;
-
-        //Search for user's folder
-        String query = "'" + folderId + "' in parents and name='" + userFolderName + "' and mimeType='application/vnd.google-apps.folder' and trashed=false";
-
-        FileList result = drive.files().list()
-                .setQ(query)
-                .setFields("files(id)")
-                .execute();
-
-        if (!result.getFiles().isEmpty()) {
-            return result.getFiles().get(0).getId();
-        }
-
-        return null;
-    }
-
-    private Drive createDriveService() throws GeneralSecurityException, IOException {
-        //Load Google credentials from the credential file
-        //Scoped to only access Google Drive
-        GoogleCredential credential = GoogleCredential.fromStream(new FileInputStream(SERVICE_ACCOUNT_KEY_PATH)).createScoped(Collections.singleton(DriveScopes.DRIVE));
-
-        //Create and return a new Drive instance with HTTP, JSON Factory for parsing, Google Credentials
-        return new Drive.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(),
-                JSON_FACTORY,
-                credential)
-                .build();
+        return new PagedResponse<>(userFiles, nextPageToken);
     }
 
     //Function to delete a file from the user's drive folder
     public boolean deleteFile(String firebaseUID, String fileId) throws GeneralSecurityException, IOException {
         try {
-            Drive drive = createDriveService();
+            Drive drive = driveClientService.getDrive();
 
             //Verify the file belongs to this user
             com.google.api.services.drive.model.File driveFile = drive.files().get(fileId)
                     .setFields("parents")
                     .execute();
 
-            String userFolderId = getUserFolderId(drive, firebaseUID);
+            String userFolderId = userFolderService.findUserFolderId(drive, firebaseUID);
             if (userFolderId == null || !driveFile.getParents().contains(userFolderId)) {
                 System.err.println("File does not belong to user or user folder not found");
                 return false;
@@ -181,8 +150,10 @@ public class UserFileService {
             DocumentExtraction dbRecord = documentRepository.findByFileId(fileId);
             if (dbRecord != null) {
                 documentRepository.delete(dbRecord);
+                tagIndexService.remove(dbRecord.getId());
                 System.out.println("File deleted from database: " + fileId);
             }
+            documentSearchService.delete(fileId);
 
             return true;
 
@@ -194,14 +165,14 @@ public class UserFileService {
 
     public Map<String, Object> renameFile(String firebaseUID, String fileId, String newFileName) throws GeneralSecurityException, IOException {
         try {
-            Drive drive = createDriveService();
+            Drive drive = driveClientService.getDrive();
 
             //Verify the file belongs to this user
             com.google.api.services.drive.model.File driveFile = drive.files().get(fileId)
                     .setFields("parents")
                     .execute();
 
-            String userFolderId = getUserFolderId(drive, firebaseUID);
+            String userFolderId = userFolderService.findUserFolderId(drive, firebaseUID);
             if (userFolderId == null || !driveFile.getParents().contains(userFolderId)) {
                 System.err.println("File does not belong to user or user folder not found");
                 return null;
@@ -238,14 +209,14 @@ public class UserFileService {
 
     public byte[] getFileContent(String firebaseUID, String fileId) throws GeneralSecurityException, IOException {
         try {
-            Drive drive = createDriveService();
+            Drive drive = driveClientService.getDrive();
 
             //Verify the file belongs to this user
             com.google.api.services.drive.model.File driveFile = drive.files().get(fileId)
                     .setFields("parents")
                     .execute();
 
-            String userFolderId = getUserFolderId(drive, firebaseUID);
+            String userFolderId = userFolderService.findUserFolderId(drive, firebaseUID);
             if (userFolderId == null || !driveFile.getParents().contains(userFolderId)) {
                 System.err.println("File does not belong to user or user folder not found");
                 return null;
@@ -0,0 +1,152 @@
+package com.organizer.drive_backend.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.FileList;
+import com.organizer.drive_backend.model.UserFolder;
+import com.organizer.drive_backend.repository.UserFolderRepository;
+
+import jakarta.annotation.PostConstruct;
+
+//Resolves the user_<uid> Drive folder of a user
+//The folder ID never changes, so it is kept in the database and in memory
+//instead of being looked up in Drive on every request
+@Service
+public class UserFolderService {
+    @Autowired
+    private UserFolderRepository userFolderRepository;
+
+    //ID of the master folder that holds every user folder
+    @Value("${google.drive.folder.id}")
+    private String folderId;
+
+    //uid -> folderId
+    private final Map<String, String> folderCache = new ConcurrentHashMap<>();
+
+    //Lookups currently talking to Drive, so parallel requests for one uid share a single call
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    //Load every known folder into memory at startup
+    @PostConstruct
+    public void warmCache() {
+        for (UserFolder userFolder : userFolderRepository.findAll()) {
+            folderCache.put(userFolder.getFirebaseUid(), userFolder.getFolderId());
+        }
+        System.out.println("Loaded " + folderCache.size() + " user folders into cache");
+    }
+
+    //Return the user's folder ID, or null if the user has no folder yet
+    public String findUserFolderId(Drive drive, String firebaseUID) throws IOException {
+        String cached = folderCache.get(firebaseUID);
+        if (cached != null) {
+            return cached;
+        }
+        return singleFlight(firebaseUID, () -> searchUserFolder(drive, firebaseUID));
+    }
+
+    //Return the user's folder ID, creating the folder if it doesn't exist
+    public String getOrCreateUserFolderId(Drive drive, String firebaseUID) throws IOException {
+        String cached = folderCache.get(firebaseUID);
+        if (cached != null) {
+            return cached;
+        }
+        return singleFlight(firebaseUID, () -> {
+            String existingFolderId = searchUserFolder(drive, firebaseUID);
+            return existingFolderId != null ? existingFolderId : createUserFolder(drive, firebaseUID);
+        });
+    }
+
+    @FunctionalInterface
+    private interface FolderLookup {
+        String resolve() throws IOException;
+    }
+
+    //Only one thread per uid runs the lookup, the others wait for its result
+    //This keeps two parallel first uploads from creating two folders (within this instance)
+    private String singleFlight(String firebaseUID, FolderLookup lookup) throws IOException {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(firebaseUID, mine);
+
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                //The other lookup failed, run our own below
+            }
+            String cached = folderCache.get(firebaseUID);
+            //A find-only lookup may have come back empty while this caller needs the folder created
+            return cached != null ? cached : singleFlight(firebaseUID, lookup);
+        }
+
+        try {
+            //Another thread may have finished between our cache check and putIfAbsent
+            String resolved = folderCache.get(firebaseUID);
+            if (resolved == null) {
+                resolved = lookup.resolve();
+                if (resolved != null) {
+                    remember(firebaseUID, resolved);
+                }
+            }
+            mine.complete(resolved);
+            return resolved;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(firebaseUID, mine);
+        }
+    }
+
+    private void remember(String firebaseUID, String userFolderId) {
+        UserFolder userFolder = new UserFolder();
+        userFolder.setFirebaseUid(firebaseUID);
+        userFolder.setFolderId(userFolderId);
+        userFolder.setCreatedAt(LocalDateTime.now());
+        userFolderRepository.save(userFolder);
+
+        folderCache.put(firebaseUID, userFolderId);
+    }
+
+    //Search the master folder for an existing user folder
+    private String searchUserFolder(Drive drive, String firebaseUID) throws IOException {
+        String userFolderName = "user_" + firebaseUID;
+
+        //Query to check if user folder already exists in master folder
+        String query = "'" + folderId + "' in parents and name='" + userFolderName + "' and mimeType='application/vnd.google-apps.folder' and trashed=false";
+
+        FileList result = drive.files().list().setQ(query).setFields("files(id)").execute();
+
+        //If folder exists, return the existing folders id
+        if (!result.getFiles().isEmpty()) {
+            String existingFolderId = result.getFiles().get(0).getId();
+            System.out.println("Using existing user folder: " + existingFolderId);
+            return existingFolderId;
+        }
+
+        return null;
+    }
+
+    //Create a new folder
+    private String createUserFolder(Drive drive, String firebaseUID) throws IOException {
+        com.google.api.services.drive.model.File folderMetaData = new com.google.api.services.drive.model.File();
+        folderMetaData.setName("user_" + firebaseUID);
+        folderMetaData.setMimeType("application/vnd.google-apps.folder");
+        folderMetaData.setParents(Collections.singletonList(folderId));
+
+        com.google.api.services.drive.model.File createdFolder = drive.files().create(folderMetaData).setFields("id").execute();
+        System.out.println("Created new user folder: " + createdFolder.getId());
+
+        return createdFolder.getId();
+    }
+}
@@ -0,0 +1,148 @@
+package com.organizer.drive_backend.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentText;
+import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.service.ExtractionPersistenceService;
+
+//Tag listing and keyword search with the text stored inline (the old layout) versus compressed in document_texts
+//The old layout is recreated in a scratch table with the same columns plus extracted_text
+//Needs the configured MySQL database, run with: mvn test -Dtest=DocumentStorageBenchmark -Dbenchmark=true
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DocumentStorageBenchmark {
+
+	private static final int DOCUMENTS = 300;
+	private static final int WORDS_PER_DOCUMENT = 60_000;
+	private static final int RUNS = 5;
+	private static final String TAG = "storagebench";
+	private static final String KEYWORD = "needle-in-document-7";
+
+	private static final String[] VOCABULARY = ("revenue quarter report contract employee policy analysis design "
+			+ "database interface research budget forecast agreement student lecture assignment chapter section "
+			+ "figure table results method summary conclusion appendix reference customer product market").split(" ");
+
+	@Autowired
+	private DocumentRepository documentRepository;
+
+	@Autowired
+	private ExtractionPersistenceService extractionPersistenceService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	void createCorpus() {
+		jdbcTemplate.execute("DROP TABLE IF EXISTS bench_inline_extractions");
+		jdbcTemplate.execute("CREATE TABLE bench_inline_extractions (id BIGINT PRIMARY KEY, file_name VARCHAR(255), "
+				+ "file_id VARCHAR(255), mime_type VARCHAR(255), extracted_text LONGTEXT, extraction_time DATETIME(6), "
+				+ "status VARCHAR(255), tags VARCHAR(1000), tag_classification TEXT)");
+
+		Random random = new Random(42);
+		try (ExtractionPersistenceService.BulkWriter writer = extractionPersistenceService.openWriter()) {
+			for (int i = 0; i < DOCUMENTS; i++) {
+				String text = generateText(random, i);
+
+				DocumentExtraction extraction = new DocumentExtraction();
+				extraction.setFileName("storage-bench-" + i + ".pdf");
+				extraction.setFileId("storage-bench-" + i);
+				extraction.setMimeType("application/pdf");
+				extraction.setText(DocumentText.of(text));
+				extraction.setExtractionTime(LocalDateTime.now());
+				extraction.setStatus("Success");
+				extraction.setTags(TAG + ",report");
+				extraction.setTagClassification("{\"primary_tags\":[\"report\"]}");
+				writer.add(() -> List.of(extraction));
+
+				jdbcTemplate.update("INSERT INTO bench_inline_extractions VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+						i, extraction.getFileName(), extraction.getFileId(), extraction.getMimeType(), text,
+						extraction.getExtractionTime(), extraction.getStatus(), extraction.getTags(),
+						extraction.getTagClassification());
+			}
+		}
+		jdbcTemplate.execute("ANALYZE TABLE bench_inline_extractions, document_extractions, document_texts");
+	}
+
+	@AfterAll
+	void removeCorpus() {
+		List<Long> textIds = jdbcTemplate.queryForList(
+				"SELECT text_id FROM document_extractions WHERE file_id LIKE 'storage-bench-%' AND text_id IS NOT NULL", Long.class);
+		jdbcTemplate.update("DELETE FROM document_extractions WHERE file_id LIKE 'storage-bench-%'");
+		for (Long textId : textIds) {
+			jdbcTemplate.update("DELETE FROM document_texts WHERE id = ?", textId);
+		}
+		jdbcTemplate.execute("DROP TABLE IF EXISTS bench_inline_extractions");
+	}
+
+	@Test
+	void listByTag() {
+		//Before: loading the entity read every column, text included
+		double inline = time(() -> jdbcTemplate.queryForList(
+				"SELECT * FROM bench_inline_extractions WHERE tags LIKE CONCAT('%', ?, '%')", TAG));
+		double separate = time(() -> documentRepository.findSummariesByTag(TAG, 0, DOCUMENTS + 1));
+
+		assertEquals(DOCUMENTS, documentRepository.findSummariesByTag(TAG, 0, DOCUMENTS + 1).size());
+		System.out.printf("list by tag: inline text %.1f ms, separate compressed text %.1f ms%n", inline, separate);
+	}
+
+	@Test
+	void searchByTagAndKeyword() {
+		double inline = time(() -> jdbcTemplate.queryForList(
+				"SELECT * FROM bench_inline_extractions WHERE tags LIKE CONCAT('%', ?, '%') AND extracted_text LIKE CONCAT('%', ?, '%')",
+				TAG, KEYWORD));
+		double separate = time(() -> documentRepository.findSummariesWithAllTags(List.of(TAG), KEYWORD, 0, DOCUMENTS + 1));
+
+		assertEquals(1, documentRepository.findSummariesWithAllTags(List.of(TAG), KEYWORD, 0, DOCUMENTS + 1).size());
+		System.out.printf("search by tag and keyword: inline text %.1f ms, separate compressed text %.1f ms%n", inline, separate);
+	}
+
+	@Test
+	void storageSize() {
+		long inline = jdbcTemplate.queryForObject("SELECT SUM(LENGTH(extracted_text)) FROM bench_inline_extractions", Long.class);
+		long compressed = jdbcTemplate.queryForObject("SELECT SUM(LENGTH(t.content)) FROM document_extractions d "
+				+ "JOIN document_texts t ON t.id = d.text_id WHERE d.file_id LIKE 'storage-bench-%'", Long.class);
+		System.out.printf("text bytes: inline %.1f MB, compressed %.1f MB (%.1fx smaller)%n",
+				inline / 1048576.0, compressed / 1048576.0, (double) inline / compressed);
+	}
+
+	//Average milliseconds per call after one warm-up call
+	private double time(Supplier<?> query) {
+		query.get();
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			query.get();
+		}
+		return (System.nanoTime() - start) / 1_000_000.0 / RUNS;
+	}
+
+	private String generateText(Random random, int document) {
+		List<String> words = new ArrayList<>(WORDS_PER_DOCUMENT);
+		for (int w = 0; w < WORDS_PER_DOCUMENT; w++) {
+			words.add(VOCABULARY[random.nextInt(VOCABULARY.length)] + (random.nextInt(10) == 0 ? "." : ""));
+		}
+		//Exactly one document contains the keyword, deep into the text
+		if (document == 7) {
+			words.set(WORDS_PER_DOCUMENT - 10, KEYWORD);
+		}
+		return String.join(" ", words);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.organizer.drive_backend.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+import com.organizer.drive_backend.model.DocumentText;
+import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.service.ExtractionPersistenceService;
+
+//Compares one save() per row with the chunked bulk writer used by batch ingestion
+//Needs the configured MySQL database, run with: mvn test -Dtest=ExtractionInsertBenchmark -Dbenchmark=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExtractionInsertBenchmark {
+
+	private static final int ROWS = 5000;
+
+	@Autowired
+	private DocumentRepository documentRepository;
+
+	@Autowired
+	private ExtractionPersistenceService extractionPersistenceService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void removeBenchmarkRows() {
+		List<Long> textIds = jdbcTemplate.queryForList(
+				"SELECT text_id FROM document_extractions WHERE file_id LIKE 'bench-%' AND text_id IS NOT NULL", Long.class);
+		jdbcTemplate.update("DELETE FROM document_extractions WHERE file_id LIKE 'bench-%'");
+		for (Long textId : textIds) {
+			jdbcTemplate.update("DELETE FROM document_texts WHERE id = ?", textId);
+		}
+	}
+
+	@Test
+	void saveOneByOne() {
+		List<DocumentExtraction> extractions = createExtractions("bench-single-");
+
+		long start = System.nanoTime();
+		for (DocumentExtraction extraction : extractions) {
+			documentRepository.save(extraction);
+		}
+		report("save() per row", start);
+	}
+
+	@Test
+	void bulkWriter() {
+		List<DocumentExtraction> extractions = createExtractions("bench-bulk-");
+
+		long start = System.nanoTime();
+		try (ExtractionPersistenceService.BulkWriter writer = extractionPersistenceService.openWriter()) {
+			for (DocumentExtraction extraction : extractions) {
+				writer.add(() -> List.of(extraction));
+			}
+		}
+		report("chunked bulk writer", start);
+	}
+
+	private List<DocumentExtraction> createExtractions(String fileIdPrefix) {
+		List<DocumentExtraction> extractions = new ArrayList<>();
+		for (int i = 0; i < ROWS; i++) {
+			DocumentExtraction extraction = new DocumentExtraction();
+			extraction.setFileName("benchmark-" + i + ".pdf");
+			extraction.setFileId(fileIdPrefix + i);
+			extraction.setMimeType("application/pdf");
+			extraction.setText(DocumentText.of("Benchmark document " + i + " ".repeat(200)));
+			extraction.setExtractionTime(LocalDateTime.now());
+			extraction.setStatus("Success");
+			extraction.setTags("report,technical");
+			extraction.setTagClassification("{}");
+			extractions.add(extraction);
+		}
+		return extractions;
+	}
+
+	private void report(String name, long startNanos) {
+		double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+		System.out.printf("%s: %d rows in %.2f s (%.0f rows/s)%n", name, ROWS, seconds, ROWS / seconds);
+	}
+
+}
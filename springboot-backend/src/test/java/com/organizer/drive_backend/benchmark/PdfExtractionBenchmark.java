@@ -0,0 +1,121 @@
+package com.organizer.drive_backend.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.organizer.drive_backend.extraction.DocumentSource;
+import com.organizer.drive_backend.extraction.ExtractionScheduler;
+import com.organizer.drive_backend.extraction.PdfTextExtractor;
+
+//Compares single-threaded PDF extraction with the page-parallel mode on a generated 600-page PDF
+//Run with: mvn test -Dtest=PdfExtractionBenchmark -Dbenchmark=true (-Dbenchmark.threads=N to override the core count)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PdfExtractionBenchmark {
+
+	private static final int PAGES = 600;
+	private static final int LINES_PER_PAGE = 45;
+	private static final int RUNS = 5;
+	private static final int THREADS = Integer.getInteger("benchmark.threads", Runtime.getRuntime().availableProcessors());
+
+	private static File pdf;
+
+	@BeforeAll
+	static void createPdf() throws IOException {
+		pdf = File.createTempFile("benchmark_", ".pdf");
+		PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+
+		try (PDDocument document = new PDDocument()) {
+			for (int p = 0; p < PAGES; p++) {
+				PDPage page = new PDPage();
+				document.addPage(page);
+				try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+					content.beginText();
+					content.setFont(font, 10);
+					content.setLeading(14);
+					content.newLineAtOffset(40, 750);
+					for (int line = 0; line < LINES_PER_PAGE; line++) {
+						content.showText("Page " + p + " line " + line + ": quarterly revenue grew while operating costs held steady");
+						content.newLine();
+					}
+					content.endText();
+				}
+			}
+			document.save(pdf);
+		}
+	}
+
+	@AfterAll
+	static void deletePdf() {
+		pdf.delete();
+	}
+
+	@Test
+	void singleThreadedVersusPageParallel() throws IOException {
+		PdfTextExtractor singleThreaded = createExtractor(Integer.MAX_VALUE);
+		PdfTextExtractor parallel = createExtractor(100);
+
+		try {
+			//Warm up both paths and check they produce the same text
+			String expected = extract(singleThreaded);
+			assertEquals(expected, extract(parallel));
+
+			double singleSeconds = time(singleThreaded);
+			double parallelSeconds = time(parallel);
+
+			System.out.printf("single-threaded: %.2f s per document%n", singleSeconds);
+			System.out.printf("page-parallel (%d threads): %.2f s per document, %.2fx speedup%n",
+					THREADS, parallelSeconds, singleSeconds / parallelSeconds);
+		} finally {
+			singleThreaded.stopPageExecutor();
+			parallel.stopPageExecutor();
+		}
+	}
+
+	private PdfTextExtractor createExtractor(int pageThreshold) {
+		PdfTextExtractor extractor = new PdfTextExtractor();
+		ReflectionTestUtils.setField(extractor, "parallelPageThreshold", pageThreshold);
+		ReflectionTestUtils.setField(extractor, "parallelThreads", THREADS);
+		ReflectionTestUtils.setField(extractor, "minPagesPerWorker", 25);
+		ReflectionTestUtils.setField(extractor, "extractionScheduler", unlimitedScheduler());
+		ReflectionTestUtils.setField(extractor, "maxChars", Long.MAX_VALUE);
+		ReflectionTestUtils.setField(extractor, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+		extractor.startPageExecutor();
+		return extractor;
+	}
+
+	private String extract(PdfTextExtractor extractor) throws IOException {
+		StringWriter text = new StringWriter();
+		extractor.writeText(DocumentSource.of(pdf), text);
+		return text.toString();
+	}
+
+	private double time(PdfTextExtractor extractor) throws IOException {
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			extract(extractor);
+		}
+		return (System.nanoTime() - start) / 1_000_000_000.0 / RUNS;
+	}
+
+	private static ExtractionScheduler unlimitedScheduler() {
+		ExtractionScheduler scheduler = new ExtractionScheduler();
+		ReflectionTestUtils.setField(scheduler, "budgetBytes", Long.MAX_VALUE);
+		scheduler.init();
+		return scheduler;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.organizer.drive_backend.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.organizer.drive_backend.model.PagedResponse;
+
+class JsonArrayStreamerTest {
+
+	private JsonArrayStreamer streamer;
+
+	@BeforeEach
+	void setUp() {
+		streamer = new JsonArrayStreamer();
+		ReflectionTestUtils.setField(streamer, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(streamer, "batchSize", 2);
+	}
+
+	@Test
+	void writesEveryPageAsOneArray() throws IOException {
+		List<String> cursors = new ArrayList<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		streamer.<Integer>stream((cursor, pageSize) -> {
+			cursors.add(cursor);
+			int start = cursor == null ? 0 : Integer.parseInt(cursor);
+			List<Integer> items = new ArrayList<>();
+			for (int i = start; i < Math.min(start + pageSize, 5); i++) {
+				items.add(i);
+			}
+			return new PagedResponse<>(items, start + pageSize < 5 ? String.valueOf(start + pageSize) : null);
+		}).getBody().writeTo(out);
+
+		assertEquals("[0,1,2,3,4]", out.toString(StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList(null, "2", "4"), cursors);
+	}
+
+	@Test
+	void failureLeavesTheArrayUnterminated() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertThrows(IOException.class, () -> streamer.<Integer>stream((cursor, pageSize) -> {
+			if (cursor != null) {
+				throw new IllegalStateException("database went away");
+			}
+			return new PagedResponse<>(List.of(1, 2), "next");
+		}).getBody().writeTo(out));
+
+		assertEquals("[1,2", out.toString(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.organizer.drive_backend.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ExtractionSchedulerTest {
+
+	private ExtractionScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		scheduler = new ExtractionScheduler();
+		ReflectionTestUtils.setField(scheduler, "budgetBytes", 100L);
+		ReflectionTestUtils.setField(scheduler, "maxQueued", 1);
+		ReflectionTestUtils.setField(scheduler, "maxWaitMs", 5000L);
+		scheduler.init();
+	}
+
+	@Test
+	void queuesUntilBudgetIsReleased() throws Exception {
+		ExtractionScheduler.Permit first = scheduler.admit(80, "first");
+
+		CompletableFuture<ExtractionScheduler.Permit> second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return scheduler.admit(50, "second");
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		Thread.sleep(200);
+		assertFalse(second.isDone());
+
+		//Queue is full, the next one is turned away straight away
+		assertThrows(ExtractionRejectedException.class, () -> scheduler.admit(10, "third"));
+
+		first.close();
+		second.get(5, TimeUnit.SECONDS).close();
+
+		assertEquals(2L, scheduler.getMetrics().get("admitted"));
+		assertEquals(1L, scheduler.getMetrics().get("queued"));
+		assertEquals(1L, scheduler.getMetrics().get("rejected"));
+		assertEquals(0L, scheduler.getMetrics().get("inUseBytes"));
+	}
+
+	@Test
+	void documentLargerThanTheBudgetRunsAlone() throws Exception {
+		try (ExtractionScheduler.Permit permit = scheduler.admit(1000, "huge")) {
+			assertTrue(permit.getBytes() <= 100);
+		}
+	}
+
+}
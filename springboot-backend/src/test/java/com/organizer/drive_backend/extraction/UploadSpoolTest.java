@@ -0,0 +1,61 @@
+package com.organizer.drive_backend.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class UploadSpoolTest {
+
+	@Test
+	void smallUploadStaysInMemory() throws Exception {
+		UploadSpool spool = new UploadSpool(16, ".pdf");
+		spool.write("hello".getBytes(), 0, 5);
+		spool.close();
+
+		assertTrue(spool.isInMemory());
+		ByteBuffer buffer = spool.asByteBuffer();
+		byte[] content = new byte[buffer.remaining()];
+		buffer.get(content);
+		assertArrayEquals("hello".getBytes(), content);
+		spool.discard();
+	}
+
+	@Test
+	void largeUploadMovesToOneTempFile() throws Exception {
+		UploadSpool spool = new UploadSpool(8, ".pdf");
+		spool.write("0123456".getBytes(), 0, 7);
+		spool.write("789abc".getBytes(), 0, 6);
+		spool.close();
+
+		assertFalse(spool.isInMemory());
+		assertEquals(13, spool.size());
+		File file = spool.getFile();
+		try (InputStream inputStream = spool.openInputStream()) {
+			assertArrayEquals("0123456789abc".getBytes(), inputStream.readAllBytes());
+		}
+
+		spool.discard();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	void contentHashMatchesTheHashOfTheFile() throws Exception {
+		UploadSpool spool = new UploadSpool(8, ".pdf");
+		spool.write("0123456".getBytes(), 0, 7);
+		spool.write("789abc".getBytes(), 0, 6);
+		spool.close();
+
+		//Hashed while streaming, so it must match a hash of the bytes on disk
+		assertEquals(ContentHash.sha256(spool.getFile()), spool.getContentHash());
+		assertEquals(64, spool.getContentHash().length());
+		spool.discard();
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.organizer.drive_backend.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DocumentExtractionTest {
+
+	@Test
+	void settingTagsKeepsTheTagRowsInStep() {
+		DocumentExtraction extraction = new DocumentExtraction();
+
+		extraction.setTags("computer-vision, research,,research ");
+		assertEquals("computer-vision, research,,research ", extraction.getTags());
+		assertEquals(List.of("computer-vision", "research"), List.copyOf(extraction.getTagSet()));
+		//Exact tags, not substrings of the stored string
+		assertFalse(extraction.getTagSet().contains("computer"));
+
+		extraction.setTags(null);
+		assertTrue(extraction.getTagSet().isEmpty());
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.organizer.drive_backend.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class DocumentTextTest {
+
+	@Test
+	void roundTripsInTheMysqlCompressLayout() {
+		String text = "Quarterly report – revenue grew 12% ✓\n".repeat(2000);
+
+		DocumentText documentText = DocumentText.of(text);
+		byte[] content = documentText.getContent();
+
+		//4-byte little-endian length of the UTF-8 bytes, then a zlib stream (0x78 header)
+		int utf8Length = text.getBytes(StandardCharsets.UTF_8).length;
+		assertEquals(utf8Length, (content[0] & 0xff) | (content[1] & 0xff) << 8 | (content[2] & 0xff) << 16 | (content[3] & 0xff) << 24);
+		assertEquals(0x78, content[4] & 0xff);
+		assertTrue(content.length < utf8Length / 10);
+
+		assertEquals(text.length(), documentText.getCharLength());
+		assertEquals(text, documentText.decompress());
+	}
+
+	@Test
+	void emptyAndMissingText() {
+		assertNull(DocumentText.of(null));
+		assertArrayEquals(new byte[0], DocumentText.of("").getContent());
+		assertEquals("", DocumentText.of("").decompress());
+	}
+
+}
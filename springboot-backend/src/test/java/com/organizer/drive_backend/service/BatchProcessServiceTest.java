@@ -0,0 +1,44 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.util.DateTime;
+import com.organizer.drive_backend.model.BatchJob;
+
+class BatchProcessServiceTest {
+
+	@Test
+	void watermarkFollowsTheNewestFileWhenNothingFailed() {
+		BatchJob job = new BatchJob();
+		assertNull(BatchProcessService.nextWatermark(job));
+
+		BatchProcessService.recordModifiedTime(job, DateTime.parseRfc3339("2024-03-01T10:00:00.000Z"));
+		BatchProcessService.recordModifiedTime(job, DateTime.parseRfc3339("2024-03-03T10:00:00.000Z"));
+		BatchProcessService.recordModifiedTime(job, DateTime.parseRfc3339("2024-03-02T10:00:00.000Z"));
+
+		assertEquals(DateTime.parseRfc3339("2024-03-03T10:00:00.000Z").getValue(),
+				DateTime.parseRfc3339(BatchProcessService.nextWatermark(job)).getValue());
+	}
+
+	@Test
+	void watermarkStopsAtTheOldestFailedFileSoTheNextIncrementalRunListsItAgain() {
+		BatchJob job = new BatchJob();
+		DateTime older = DateTime.parseRfc3339("2024-03-01T10:00:00.000Z");
+		DateTime failed = DateTime.parseRfc3339("2024-03-02T10:00:00.000Z");
+		DateTime timedOut = DateTime.parseRfc3339("2024-03-04T10:00:00.000Z");
+		DateTime newest = DateTime.parseRfc3339("2024-03-05T10:00:00.000Z");
+		for (DateTime modifiedTime : new DateTime[] {older, failed, timedOut, newest}) {
+			BatchProcessService.recordModifiedTime(job, modifiedTime);
+		}
+
+		BatchProcessService.recordFailedModifiedTime(job, timedOut);
+		BatchProcessService.recordFailedModifiedTime(job, failed);
+
+		//Listed with modifiedTime >= watermark, so the failed file is included
+		assertEquals(failed.getValue(), DateTime.parseRfc3339(BatchProcessService.nextWatermark(job)).getValue());
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+	@Test
+	void opensAfterThresholdAndClosesAfterSuccessfulTrial() {
+		AtomicLong now = new AtomicLong();
+		CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, now::get);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquirePermission());
+			breaker.onFailure();
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+
+		//One trial call once the open duration has passed
+		now.set(1_000_000_000L);
+		assertTrue(breaker.tryAcquirePermission());
+		assertFalse(breaker.tryAcquirePermission());
+		breaker.onSuccess();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquirePermission());
+	}
+
+	@Test
+	void failedTrialOpensTheBreakerAgain() {
+		AtomicLong now = new AtomicLong();
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1000, now::get);
+
+		breaker.tryAcquirePermission();
+		breaker.onFailure();
+
+		now.set(1_000_000_000L);
+		assertTrue(breaker.tryAcquirePermission());
+		breaker.onFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(2, breaker.getTimesOpened());
+	}
+
+}
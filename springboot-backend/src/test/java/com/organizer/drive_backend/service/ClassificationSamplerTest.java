@@ -0,0 +1,48 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ClassificationSamplerTest {
+
+	@Test
+	void shortDocumentIsSentWholeWithWhitespaceNormalised() {
+		ClassificationSampler sampler = new ClassificationSampler(50, 200);
+
+		List<String> chunks = sampler.sample("  Offer   letter\n\n\tDear Jordan,\r\n welcome aboard ");
+
+		assertEquals(List.of("Offer letter Dear Jordan, welcome aboard"), chunks);
+	}
+
+	@Test
+	void longDocumentIsSampledWithinTheWordBudget() {
+		StringBuilder text = new StringBuilder();
+		for (int section = 1; section <= 10; section++) {
+			text.append("SECTION ").append(section).append(" OVERVIEW\n");
+			for (int line = 0; line < 20; line++) {
+				text.append("body text of section ").append(section).append(" keeps going here.\n");
+			}
+		}
+		ClassificationSampler sampler = new ClassificationSampler(100, 400);
+
+		List<String> chunks = sampler.sample(text.toString());
+
+		assertEquals(4, chunks.size());
+		assertTrue(chunks.get(0).startsWith("SECTION 1 OVERVIEW body text of section 1"));
+		int totalWords = 0;
+		for (String chunk : chunks) {
+			int words = chunk.split(" ").length;
+			assertTrue(words <= 100);
+			totalWords += words;
+		}
+		assertTrue(totalWords <= 400);
+
+		//Headings past the first chunk end up together in the last one
+		assertTrue(chunks.get(3).startsWith("SECTION 2 OVERVIEW SECTION 3 OVERVIEW"));
+	}
+
+}
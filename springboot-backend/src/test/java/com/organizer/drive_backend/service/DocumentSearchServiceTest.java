@@ -0,0 +1,143 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.organizer.drive_backend.model.DocumentText;
+import com.organizer.drive_backend.repository.DocumentRepository;
+import com.organizer.drive_backend.repository.DocumentTextRepository;
+
+class DocumentSearchServiceTest {
+
+	@TempDir
+	Path indexDir;
+
+	private DocumentSearchService service;
+
+	@BeforeEach
+	void setUp() throws InterruptedException {
+		//Empty database, so the startup check finds nothing to rebuild
+		DocumentRepository repository = (DocumentRepository) Proxy.newProxyInstance(
+				DocumentRepository.class.getClassLoader(), new Class<?>[] { DocumentRepository.class },
+				(proxy, method, args) -> 0L);
+
+		service = new DocumentSearchService();
+		ReflectionTestUtils.setField(service, "documentRepository", repository);
+		ReflectionTestUtils.setField(service, "indexDir", indexDir.toString());
+		ReflectionTestUtils.setField(service, "refreshMs", 60000L);
+		ReflectionTestUtils.setField(service, "commitMs", 60000L);
+		service.openIndex();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!service.isReady() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(service.isReady());
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.closeIndex();
+	}
+
+	@Test
+	void moreFrequentMatchesRankFirst() throws IOException {
+		service.index("once", "The quarterly budget was approved after a long meeting about hiring and office space.");
+		service.index("often", "Budget summary: the budget covers salaries, and the budget forecast is attached.");
+		service.index("never", "Lecture notes on thermodynamics and entropy.");
+		service.refresh();
+
+		assertEquals(List.of("often", "once"), fileIds(search("budget")));
+	}
+
+	@Test
+	void matchingIgnoresCaseAndPunctuation() throws IOException {
+		service.index("doc", "ANNUAL REPORT (2024): Revenue, grew.");
+		service.refresh();
+
+		assertEquals(List.of("doc"), fileIds(search("revenue")));
+		assertEquals(List.of("doc"), fileIds(search("Annual Report")));
+		assertEquals(List.of(), fileIds(search("report annual")));
+	}
+
+	@Test
+	void reindexingReplacesAndDeleteRemoves() throws IOException {
+		service.index("doc", "draft contract");
+		service.index("doc", "signed agreement");
+		service.refresh();
+
+		assertEquals(List.of(), fileIds(search("contract")));
+		assertEquals(List.of("doc"), fileIds(search("agreement")));
+
+		service.delete("doc");
+		service.refresh();
+		assertEquals(List.of(), fileIds(search("agreement")));
+	}
+
+	@Test
+	void pagesResumeAfterTheLastHit() throws IOException {
+		//Same text, so the scores tie and the file ID decides the order
+		for (String fileId : List.of("d", "b", "e", "a", "c")) {
+			service.index(fileId, "invoice payment");
+		}
+		service.index("top", "invoice invoice invoice");
+		service.refresh();
+
+		List<DocumentSearchService.SearchHit> first = service.search("invoice", null, 3);
+		List<DocumentSearchService.SearchHit> second = service.search("invoice", first.get(2), 3);
+		List<DocumentSearchService.SearchHit> third = service.search("invoice", second.get(2), 3);
+
+		assertEquals(List.of("top", "a", "b"), fileIds(first));
+		assertEquals(List.of("c", "d", "e"), fileIds(second));
+		assertEquals(List.of(), fileIds(third));
+	}
+
+	@Test
+	void updatesDuringARebuildWinOverTheRowsItRead() throws IOException {
+		service.index("gone", "old invoice");
+
+		//The database page still holds the old text of doc, it was reprocessed while the page was being read
+		AtomicInteger pages = new AtomicInteger();
+		DocumentTextRepository texts = (DocumentTextRepository) Proxy.newProxyInstance(
+				DocumentTextRepository.class.getClassLoader(), new Class<?>[] { DocumentTextRepository.class },
+				(proxy, method, args) -> {
+					if (pages.getAndIncrement() > 0) {
+						return List.of();
+					}
+					service.index("doc", "signed agreement");
+					return List.<Object[]>of(
+							new Object[] { 1L, "doc", DocumentText.of("draft contract") },
+							new Object[] { 2L, "other", DocumentText.of("payment reminder") });
+				});
+		ReflectionTestUtils.setField(service, "documentTextRepository", texts);
+
+		service.rebuild();
+
+		assertEquals(List.of(), fileIds(search("contract")));
+		assertEquals(List.of("doc"), fileIds(search("agreement")));
+		assertEquals(List.of("other"), fileIds(search("reminder")));
+		//Not in the database anymore
+		assertEquals(List.of(), fileIds(search("invoice")));
+	}
+
+	private List<DocumentSearchService.SearchHit> search(String keyword) throws IOException {
+		return service.search(keyword, null, 100);
+	}
+
+	private List<String> fileIds(List<DocumentSearchService.SearchHit> hits) {
+		return hits.stream().map(DocumentSearchService.SearchHit::fileId).toList();
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+class DocumentTaggerServiceTest {
+
+	@Test
+	void longDocumentIsClassifiedWithOneCallWithinTheClassifierWindow() throws IOException {
+		//Stands in for the Python classifier, records the text of every request
+		List<String> received = new CopyOnWriteArrayList<>();
+		HttpServer classifier = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		classifier.createContext("/classify", exchange -> {
+			Map<?, ?> body = new ObjectMapper().readValue(exchange.getRequestBody(), Map.class);
+			received.add((String) body.get("text"));
+			byte[] response = "{\"primary_tags\":[\"legal\"],\"secondary_tags\":[]}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		});
+		classifier.start();
+
+		DocumentTaggerService service = new DocumentTaggerService();
+		ReflectionTestUtils.setField(service, "classifierUrl", "http://localhost:" + classifier.getAddress().getPort() + "/classify");
+		ReflectionTestUtils.setField(service, "maxConnections", 2);
+		ReflectionTestUtils.setField(service, "connectTimeoutMs", 2000L);
+		ReflectionTestUtils.setField(service, "readTimeoutMs", 5000L);
+		ReflectionTestUtils.setField(service, "maxConcurrentCalls", 2);
+		ReflectionTestUtils.setField(service, "bulkheadWaitMs", 500L);
+		ReflectionTestUtils.setField(service, "breakerFailureThreshold", 5);
+		ReflectionTestUtils.setField(service, "breakerOpenDurationMs", 30000L);
+		ReflectionTestUtils.setField(service, "sampleChunkWords", 250);
+		ReflectionTestUtils.setField(service, "sampleMaxWords", 1000);
+		service.createClient();
+
+		StringBuilder text = new StringBuilder("Service agreement between the parties\n");
+		for (int line = 0; line < 2000; line++) {
+			text.append("the contractor shall deliver the services described in this agreement.\n");
+		}
+
+		try {
+			Map<String, Object> result = service.classifyDocument(text.toString());
+
+			assertEquals(List.of("legal"), result.get("primary_tags"));
+			assertEquals(1, received.size());
+			assertTrue(received.get(0).startsWith("Service agreement between the parties"));
+			//The classifier reads at most 1024 words
+			assertTrue(received.get(0).split("\\s+").length <= 1000);
+			assertEquals(1L, service.getClientMetrics().get("calls"));
+		} finally {
+			service.closeClient();
+			classifier.stop(0);
+		}
+	}
+
+}
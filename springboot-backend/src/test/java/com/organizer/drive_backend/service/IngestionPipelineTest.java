@@ -0,0 +1,69 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class IngestionPipelineTest {
+
+	@Test
+	void everyItemReachesTheSinkAndFailuresSkipLaterStages() throws Exception {
+		Map<Integer, String> results = new ConcurrentHashMap<>();
+		//Counted outside the pipeline, which would turn a thrown assertion into an ordinary stage failure
+		AtomicInteger leaked = new AtomicInteger();
+		List<Integer> items = IntStream.range(0, 200).boxed().collect(Collectors.toList());
+
+		List<IngestionPipeline.StageStats> stats = new IngestionPipeline<Integer>("test", 2)
+				.stage("first", 3, item -> {
+					if (item % 10 == 0) {
+						throw new IllegalStateException("bad " + item);
+					}
+				})
+				.stage("second", 2, item -> {
+					if (item % 10 == 0) {
+						leaked.incrementAndGet();
+					}
+				})
+				.sink("sink", 1, (item, failure) -> results.put(item, failure == null ? "ok" : failure.getMessage()))
+				.run(items);
+
+		assertEquals(200, results.size());
+		assertEquals("bad 10", results.get(10));
+		assertEquals("ok", results.get(11));
+
+		assertEquals(3, stats.size());
+		assertEquals(180, stats.get(0).processed());
+		assertEquals(20, stats.get(0).failed());
+		assertEquals(0, leaked.get());
+		assertEquals(180, stats.get(1).processed());
+		assertEquals(0, stats.get(1).failed());
+		assertEquals(200, stats.get(2).processed());
+		assertTrue(stats.get(2).throughputPerSecond() > 0);
+	}
+
+	@Test
+	void stopRequestedStopsFeedingButDrainsItemsInFlight() throws Exception {
+		Map<Integer, String> results = new ConcurrentHashMap<>();
+		List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+		new IngestionPipeline<Integer>("test", 2)
+				.stage("first", 1, item -> { })
+				.sink("sink", 1, (item, failure) -> results.put(item, "ok"))
+				.run(items, () -> results.size() >= 10);
+
+		assertTrue(results.size() >= 10);
+		assertTrue(results.size() < 100);
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("ok", results.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.organizer.drive_backend.extraction.DocTextExtractor;
+import com.organizer.drive_backend.extraction.DocumentSource;
+import com.organizer.drive_backend.extraction.DocxTextExtractor;
+import com.organizer.drive_backend.extraction.ExtractedText;
+import com.organizer.drive_backend.extraction.ExtractionScheduler;
+import com.organizer.drive_backend.extraction.ExtractionTimeoutException;
+import com.organizer.drive_backend.extraction.PdfTextExtractor;
+import com.organizer.drive_backend.extraction.TextExtractor;
+
+class ProcessDocumentServiceTest {
+
+	private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+	private ProcessDocumentService service;
+	private PdfTextExtractor pdfExtractor;
+	private File pdf;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		ExtractionScheduler scheduler = new ExtractionScheduler();
+		ReflectionTestUtils.setField(scheduler, "budgetBytes", Long.MAX_VALUE);
+		scheduler.init();
+
+		pdfExtractor = new PdfTextExtractor();
+		ReflectionTestUtils.setField(pdfExtractor, "extractionScheduler", scheduler);
+		ReflectionTestUtils.setField(pdfExtractor, "parallelPageThreshold", 100);
+		ReflectionTestUtils.setField(pdfExtractor, "minPagesPerWorker", 25);
+		ReflectionTestUtils.setField(pdfExtractor, "maxChars", Long.MAX_VALUE);
+		ReflectionTestUtils.setField(pdfExtractor, "pdfMaxMainMemoryBytes", 1024L * 1024);
+		pdfExtractor.startPageExecutor();
+
+		DocxTextExtractor docxExtractor = new DocxTextExtractor();
+		ReflectionTestUtils.setField(docxExtractor, "extractionScheduler", scheduler);
+		DocTextExtractor docExtractor = new DocTextExtractor();
+		ReflectionTestUtils.setField(docExtractor, "extractionScheduler", scheduler);
+
+		service = new ProcessDocumentService();
+		ReflectionTestUtils.setField(service, "extractorRegistry", new ExtractorRegistry(List.of(pdfExtractor, docExtractor, docxExtractor, new EndlessTextExtractor(), new StuckTextExtractor())));
+		ReflectionTestUtils.setField(service, "extractionScheduler", scheduler);
+		ReflectionTestUtils.setField(service, "workerThreads", 2);
+		ReflectionTestUtils.setField(service, "workerQueueCapacity", 10);
+		ReflectionTestUtils.setField(service, "timeoutMs", 10_000L);
+		ReflectionTestUtils.setField(service, "deadlineMs", 30_000L);
+		service.startExtractionExecutor();
+
+		pdf = File.createTempFile("extraction_", ".pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int p = 0; p < 3; p++) {
+				PDPage page = new PDPage();
+				document.addPage(page);
+				try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+					content.beginText();
+					content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+					content.newLineAtOffset(50, 700);
+					content.showText("Page " + p + " of the quarterly report");
+					content.endText();
+				}
+			}
+			document.save(pdf);
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		pdfExtractor.stopPageExecutor();
+		service.stopExtractionExecutor();
+		pdf.delete();
+	}
+
+	@Test
+	void textUnderTheLimitIsNotTruncated() throws IOException {
+		ReflectionTestUtils.setField(service, "maxChars", 10_000L);
+
+		ExtractedText extracted = service.extract(pdf, "application/pdf");
+
+		assertFalse(extracted.truncated());
+		assertTrue(extracted.text().contains("Page 2 of the quarterly report"));
+	}
+
+	@Test
+	void textOverTheLimitIsCutOffAndFlagged() throws IOException {
+		ReflectionTestUtils.setField(service, "maxChars", 40L);
+
+		ExtractedText extracted = service.extract(pdf, "application/pdf");
+
+		assertTrue(extracted.truncated());
+		assertEquals(40, extracted.text().length());
+		assertTrue(extracted.text().startsWith("Page 0 of the quarterly report"));
+	}
+
+	@Test
+	void parallelPageRangesAreCutInPageOrder() throws IOException {
+		ReflectionTestUtils.setField(service, "maxChars", 100_000L);
+		ReflectionTestUtils.setField(pdfExtractor, "parallelThreads", 4);
+		pdfExtractor.stopPageExecutor();
+		pdfExtractor.startPageExecutor();
+
+		File large = File.createTempFile("extraction_", ".pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int p = 0; p < 200; p++) {
+				PDPage page = new PDPage();
+				document.addPage(page);
+				try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+					content.beginText();
+					content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+					content.newLineAtOffset(50, 700);
+					content.showText("Page " + p + " of the annual report");
+					content.endText();
+				}
+			}
+			document.save(large);
+		}
+
+		try {
+			String full = service.extract(large, "application/pdf").text();
+			assertTrue(full.contains("Page 199 of the annual report"));
+
+			//Ends in the third of four ranges, whichever range finishes first
+			ReflectionTestUtils.setField(pdfExtractor, "maxChars", 3000L);
+			for (int run = 0; run < 5; run++) {
+				ExtractedText cut = service.extract(large, "application/pdf");
+
+				assertTrue(cut.truncated());
+				assertEquals(full.substring(0, 3000), cut.text());
+			}
+		} finally {
+			large.delete();
+		}
+	}
+
+	@Test
+	void docxIsRecognisedFromItsBytesAndReadWithoutTheObjectModel() throws IOException {
+		ReflectionTestUtils.setField(service, "maxChars", 10_000L);
+
+		File docx = File.createTempFile("extraction_", ".docx");
+		try (XWPFDocument document = new XWPFDocument(); FileOutputStream out = new FileOutputStream(docx)) {
+			document.createParagraph().createRun().setText("Quarterly report");
+			XWPFTable table = document.createTable(1, 2);
+			table.getRow(0).getCell(0).setText("Revenue");
+			table.getRow(0).getCell(1).setText("42");
+			document.createParagraph().createRun().setText("Prepared by finance");
+			document.write(out);
+		}
+
+		try {
+			//Declared as a PDF, the ZIP signature decides
+			ExtractedText extracted = service.extract(docx, "application/pdf");
+
+			assertFalse(extracted.truncated());
+			assertEquals("Quarterly report\nRevenue\t42\t\nPrepared by finance\n", extracted.text());
+			assertTrue(service.extract(docx, DOCX).text().contains("Revenue"));
+		} finally {
+			docx.delete();
+		}
+	}
+
+	@Test
+	void documentOverItsTimeBudgetIsAbandoned() throws IOException {
+		ReflectionTestUtils.setField(service, "maxChars", Long.MAX_VALUE);
+		ReflectionTestUtils.setField(service, "timeoutMs", 300L);
+
+		File endless = File.createTempFile("extraction_", ".txt");
+		Files.writeString(endless.toPath(), "ENDLESS");
+		try {
+			assertThrows(ExtractionTimeoutException.class, () -> service.extract(endless, "text/plain"));
+			assertEquals(1L, service.getWorkerMetrics().get("timedOut"));
+
+			//The worker gave up, so the pool is free for the next document
+			assertFalse(service.extract(pdf, "application/pdf").text().isEmpty());
+		} finally {
+			endless.delete();
+		}
+	}
+
+	@Test
+	void callersGiveUpWhenTheWorkersAreStuck() throws Exception {
+		ReflectionTestUtils.setField(service, "maxChars", Long.MAX_VALUE);
+		ReflectionTestUtils.setField(service, "timeoutMs", 300L);
+		ReflectionTestUtils.setField(service, "deadlineMs", 500L);
+
+		File stuck = File.createTempFile("extraction_", ".txt");
+		Files.writeString(stuck.toPath(), "STUCK");
+		try {
+			//Both workers end up in a parse that ignores the interrupt sent at its time budget
+			Thread[] callers = new Thread[2];
+			for (int i = 0; i < callers.length; i++) {
+				callers[i] = new Thread(() -> assertThrows(ExtractionTimeoutException.class, () -> service.extract(stuck, "text/plain")));
+				callers[i].start();
+			}
+			Thread.sleep(100);
+
+			//Queued behind them, the wait is cut off by the deadline instead of lasting until a worker frees up
+			long start = System.nanoTime();
+			assertThrows(ExtractionTimeoutException.class, () -> service.extract(pdf, "application/pdf"));
+			assertTrue(System.nanoTime() - start < 2_000_000_000L);
+
+			for (Thread caller : callers) {
+				caller.join();
+			}
+		} finally {
+			stuck.delete();
+		}
+	}
+
+	//Never finishes on its own, stands in for a pathological document
+	private static final class EndlessTextExtractor implements TextExtractor {
+		@Override
+		public String mimeType() {
+			return "text/plain";
+		}
+
+		@Override
+		public boolean matches(byte[] header) {
+			return TextExtractor.startsWith(header, "ENDLESS".getBytes());
+		}
+
+		@Override
+		public void writeText(DocumentSource source, Writer out) throws IOException {
+			while (true) {
+				out.write("more text ");
+			}
+		}
+	}
+
+	//Takes 3 seconds whatever happens, like a parser that never checks for interrupts
+	private static final class StuckTextExtractor implements TextExtractor {
+		@Override
+		public String mimeType() {
+			return "text/x-stuck";
+		}
+
+		@Override
+		public boolean matches(byte[] header) {
+			return TextExtractor.startsWith(header, "STUCK".getBytes());
+		}
+
+		@Override
+		public void writeText(DocumentSource source, Writer out) {
+			long end = System.nanoTime() + 3_000_000_000L;
+			while (System.nanoTime() < end) {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					//Ignored on purpose
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.organizer.drive_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import com.organizer.drive_backend.model.DocumentExtraction;
+
+class TagIndexServiceTest {
+
+	private TagIndexService index;
+
+	@BeforeEach
+	void setUp() {
+		index = new TagIndexService();
+		add(1L, "research,legal");
+		add(2L, "research,compliance");
+		add(3L, "research,legal,draft");
+		add(4L, "computer-vision,report");
+		add(5L, "computer,assignment");
+		add(6L, null);
+	}
+
+	@Test
+	void answersBooleanExpressions() {
+		assertEquals(List.of(1L, 2L), ids("research AND (legal OR compliance) AND NOT draft"));
+		assertEquals(List.of(1L, 2L), ids("research & (legal | compliance) & !draft"));
+		assertEquals(List.of(1L, 3L), ids("research legal"));
+		assertEquals(List.of(4L, 5L, 6L), ids("not research"));
+		//Exact tags only
+		assertEquals(List.of(5L), ids("computer"));
+		assertEquals(List.of(), ids("unknown"));
+	}
+
+	@Test
+	void splitsAcademicFromProfessional() {
+		assertEquals(List.of(5L), toList(index.academic()));
+		//Unclassified documents are neither
+		assertEquals(List.of(1L, 2L, 3L, 4L), toList(index.professional()));
+	}
+
+	@Test
+	void followsUpdatesAndRemovals() {
+		add(1L, "research");
+		index.remove(2L);
+
+		assertEquals(List.of(), ids("legal AND NOT draft"));
+		assertEquals(List.of(1L, 3L), ids("research"));
+		assertEquals(List.of(3L, 4L, 5L, 6L), ids("!(research AND NOT draft)"));
+	}
+
+	@Test
+	void rejectsMalformedExpressions() {
+		assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("research AND"));
+		assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("(legal OR draft"));
+		assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("legal)"));
+	}
+
+	@Test
+	void deeplyNestedExpressionIsRejectedInsteadOfOverflowingTheStack() {
+		//An even number of NOTs, right at the limit
+		assertEquals(List.of(1L, 3L), ids("!".repeat(64) + "legal"));
+		assertEquals(List.of(1L, 2L, 3L), ids("(".repeat(64) + "research" + ")".repeat(64)));
+
+		IllegalArgumentException brackets = assertThrows(IllegalArgumentException.class,
+				() -> TagExpression.parse("(".repeat(100_000) + "legal" + ")".repeat(100_000)));
+		assertTrue(brackets.getMessage().contains("nested too deeply"));
+		IllegalArgumentException nots = assertThrows(IllegalArgumentException.class,
+				() -> TagExpression.parse("NOT ".repeat(100_000) + "legal"));
+		assertTrue(nots.getMessage().contains("nested too deeply"));
+	}
+
+	private void add(long id, String tags) {
+		DocumentExtraction document = new DocumentExtraction();
+		document.setId(id);
+		document.setTags(tags);
+		index.update(document);
+	}
+
+	private List<Long> ids(String expression) {
+		return toList(index.evaluate(TagExpression.parse(expression)));
+	}
+
+	private List<Long> toList(Roaring64NavigableMap bitmap) {
+		List<Long> ids = new ArrayList<>();
+		bitmap.forEach(ids::add);
+		return ids;
+	}
+
+}